@@ -0,0 +1,87 @@
+package com.yearis.blog_application.config;
+
+import com.zaxxer.hikari.HikariDataSource;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.boot.context.properties.ConfigurationProperties;
+import org.springframework.boot.jdbc.DataSourceBuilder;
+import org.springframework.boot.jdbc.autoconfigure.DataSourceProperties;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.context.annotation.Primary;
+import org.springframework.jdbc.datasource.LazyConnectionDataSourceProxy;
+
+import javax.sql.DataSource;
+
+// our connection pools when a read replica is configured (spring.datasource.replica.url):
+// one Hikari pool for the primary (spring.datasource.*), one for the replica (spring.datasource.replica.*),
+// and the routing DataSource in front of them that JPA, JdbcTemplate and everything else use
+//
+// without a replica url none of this is created and Spring Boot sets up its single pool as before
+@Configuration
+@ConditionalOnExpression("!'${spring.datasource.replica.url:}'.isEmpty()")
+public class DataSourceConfig {
+
+    @Bean
+    @ConfigurationProperties("spring.datasource.hikari")
+    public HikariDataSource primaryDataSource(DataSourceProperties properties) {
+
+        HikariDataSource dataSource = properties.initializeDataSourceBuilder().type(HikariDataSource.class).build();
+        dataSource.setPoolName("primary");
+
+        return dataSource;
+    }
+
+    // the replica logs in as the primary's user unless it has one of its own
+    @Bean
+    @ConfigurationProperties("spring.datasource.replica.hikari")
+    public HikariDataSource replicaDataSource(@Value("${spring.datasource.replica.url}") String url,
+                                              @Value("${spring.datasource.replica.username:${spring.datasource.username:}}") String username,
+                                              @Value("${spring.datasource.replica.password:${spring.datasource.password:}}") String password) {
+
+        HikariDataSource dataSource = DataSourceBuilder.create()
+                .type(HikariDataSource.class)
+                .url(url)
+                .username(username)
+                .password(password)
+                .build();
+
+        dataSource.setPoolName("replica");
+        dataSource.setReadOnly(true);
+
+        return dataSource;
+    }
+
+    @Bean
+    ReplicaLagMonitor replicaLagMonitor(@Qualifier("replicaDataSource") DataSource replica,
+                                        @Value("${spring.datasource.replica.lag-query:SHOW REPLICA STATUS}") String lagQuery,
+                                        @Value("${spring.datasource.replica.max-lag:5}") long maxLagSeconds,
+                                        MeterRegistry meterRegistry) {
+
+        return new ReplicaLagMonitor(replica, lagQuery, maxLagSeconds, meterRegistry);
+    }
+
+    // the one everybody gets injected
+    @Bean
+    @Primary
+    public DataSource dataSource(@Qualifier("primaryDataSource") DataSource primary,
+                                 @Qualifier("replicaDataSource") DataSource replica,
+                                 ReplicaLagMonitor lagMonitor,
+                                 @Value("${spring.datasource.replica.sticky-window:10000}") long stickyWindow,
+                                 MeterRegistry meterRegistry) {
+
+        ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, replica, lagMonitor, stickyWindow, meterRegistry);
+        routing.afterPropertiesSet();
+
+        lagMonitor.setRouting(routing);
+
+        // know where the replica stands before the first read instead of sending everything to the primary for a few seconds
+        lagMonitor.check();
+
+        // the transaction manager asks for a connection before it marks the transaction read-only,
+        // the proxy holds off taking a real one until the first statement, when the routing can tell
+        return new LazyConnectionDataSourceProxy(routing);
+    }
+}
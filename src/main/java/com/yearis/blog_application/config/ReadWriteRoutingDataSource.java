@@ -0,0 +1,142 @@
+package com.yearis.blog_application.config;
+
+import com.yearis.blog_application.security.UserPrincipal;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.jdbc.datasource.lookup.AbstractRoutingDataSource;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import javax.sql.DataSource;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// sends the read-only transactions (our services are readOnly = true unless a method writes) to the replica pool,
+// everything else (writes, and JDBC outside of a transaction) to the primary
+//
+// a read still goes to the primary when the replica lags behind, or when the same user wrote something a moment ago,
+// so nobody creates a post and then gets a 404 for it.
+// Wrapped in a LazyConnectionDataSourceProxy (see DataSourceConfig): the connection is only taken on the first statement,
+// by then the transaction has told us whether it's read-only
+class ReadWriteRoutingDataSource extends AbstractRoutingDataSource {
+
+    enum Target {
+        PRIMARY, REPLICA
+    }
+
+    private final ReplicaLagMonitor lagMonitor;
+    private final long stickyWindow;
+
+    // user id -> until when (epoch ms) their reads stay on the primary
+    private final Map<Long, Long> stickyUntil = new ConcurrentHashMap<>();
+
+    private final Counter replicaReads;
+    private final Counter laggingReads;
+    private final Counter stickyReads;
+
+    ReadWriteRoutingDataSource(DataSource primary, DataSource replica, ReplicaLagMonitor lagMonitor,
+                               long stickyWindow, MeterRegistry meterRegistry) {
+
+        setTargetDataSources(Map.of(Target.PRIMARY, primary, Target.REPLICA, replica));
+        setDefaultTargetDataSource(primary);
+
+        this.lagMonitor = lagMonitor;
+        this.stickyWindow = stickyWindow;
+
+        // exposed through the actuator (/actuator/metrics/datasource.reads)
+        this.replicaReads = Counter.builder("datasource.reads")
+                .tag("target", "replica").tag("reason", "read-only")
+                .description("Read-only transactions served by the replica")
+                .register(meterRegistry);
+
+        this.laggingReads = Counter.builder("datasource.reads")
+                .tag("target", "primary").tag("reason", "replica-lag")
+                .description("Read-only transactions sent to the primary because the replica was behind")
+                .register(meterRegistry);
+
+        this.stickyReads = Counter.builder("datasource.reads")
+                .tag("target", "primary").tag("reason", "own-write")
+                .description("Read-only transactions sent to the primary because their user just wrote something")
+                .register(meterRegistry);
+    }
+
+    @Override
+    protected Object determineCurrentLookupKey() {
+
+        if (!TransactionSynchronizationManager.isActualTransactionActive()) {
+            return Target.PRIMARY;
+        }
+
+        Long userId = currentUserId();
+
+        if (!TransactionSynchronizationManager.isCurrentTransactionReadOnly()) {
+            stickAfterCommit(userId);
+            return Target.PRIMARY;
+        }
+
+        if (!lagMonitor.isReplicaUsable()) {
+            laggingReads.increment();
+            return Target.PRIMARY;
+        }
+
+        if (userId != null && isSticky(userId)) {
+            stickyReads.increment();
+            return Target.PRIMARY;
+        }
+
+        replicaReads.increment();
+
+        return Target.REPLICA;
+    }
+
+    // drops the users whose window is over, called by the lag monitor so the map doesn't grow with every writer we ever had
+    void expireSticky() {
+
+        long now = System.currentTimeMillis();
+
+        stickyUntil.values().removeIf(until -> until <= now);
+    }
+
+    /// --- Internals ---
+
+    // the window starts when the write is committed, that's when the replica starts catching up on it
+    private void stickAfterCommit(Long userId) {
+
+        if (userId == null) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    stickyUntil.put(userId, System.currentTimeMillis() + stickyWindow);
+                }
+            });
+        } else {
+            stickyUntil.put(userId, System.currentTimeMillis() + stickyWindow);
+        }
+    }
+
+    private boolean isSticky(Long userId) {
+
+        Long until = stickyUntil.get(userId);
+
+        return until != null && until > System.currentTimeMillis();
+    }
+
+    // the id our JwtAuthenticationFilter put in the security context, null for anonymous requests and background jobs
+    private static Long currentUserId() {
+
+        Authentication authentication = SecurityContextHolder.getContext().getAuthentication();
+
+        if (authentication != null && authentication.getPrincipal() instanceof UserPrincipal principal) {
+            return principal.getId();
+        }
+
+        return null;
+    }
+}
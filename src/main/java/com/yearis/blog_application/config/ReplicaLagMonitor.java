@@ -0,0 +1,95 @@
+package com.yearis.blog_application.config;
+
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+// asks the replica every few seconds how far behind the primary it is
+// while it's further behind than we allow (or doesn't answer, or its replication stopped) every read goes to the primary
+//
+// we check in the background instead of on every read, a read must not pay a round trip to find out where to go
+class ReplicaLagMonitor {
+
+    private static final Logger log = LoggerFactory.getLogger(ReplicaLagMonitor.class);
+
+    private final JdbcTemplate replica;
+    private final String lagQuery;
+    private final long maxLagSeconds;
+
+    private ReadWriteRoutingDataSource routing;
+
+    // -1 until the first check and while the replica can't tell us
+    private volatile long lagSeconds = -1;
+    private volatile boolean usable;
+
+    // whether the last check failed, only touched by check() (which never runs twice at the same time)
+    private boolean failing;
+
+    ReplicaLagMonitor(DataSource replica, String lagQuery, long maxLagSeconds, MeterRegistry meterRegistry) {
+        this.replica = new JdbcTemplate(replica);
+        this.lagQuery = lagQuery;
+        this.maxLagSeconds = maxLagSeconds;
+
+        // exposed through the actuator (/actuator/metrics/datasource.replica.lag)
+        Gauge.builder("datasource.replica.lag", this, monitor -> monitor.lagSeconds)
+                .description("Seconds the replica is behind the primary, -1 when unknown")
+                .baseUnit("seconds")
+                .register(meterRegistry);
+    }
+
+    // set once by DataSourceConfig, the routing and the monitor need each other
+    void setRouting(ReadWriteRoutingDataSource routing) {
+        this.routing = routing;
+    }
+
+    boolean isReplicaUsable() {
+
+        return usable;
+    }
+
+    @Scheduled(fixedDelayString = "${spring.datasource.replica.lag-check-interval:2000}")
+    public void check() {
+
+        boolean wasUsable = usable;
+
+        try {
+            // SHOW REPLICA STATUS has one row on a replica and none on a server that isn't one (e.g. our local stand-in),
+            // no row means nothing to wait for
+            List<Long> rows = replica.query(lagQuery, (rs, rowNum) -> rs.getObject("Seconds_Behind_Source", Long.class));
+
+            Long lag = rows.isEmpty() ? Long.valueOf(0) : rows.get(0);
+
+            // a null lag means the replication threads aren't running, the replica won't catch up by itself
+            lagSeconds = lag != null ? lag : -1;
+            usable = lag != null && lag <= maxLagSeconds;
+            failing = false;
+        } catch (RuntimeException e) {
+            lagSeconds = -1;
+            usable = false;
+
+            // the first failure in a row, also when the replica never answered at all (a wrong url, a missing
+            // REPLICATION CLIENT grant), otherwise every read would quietly go to the primary
+            if (!failing) {
+                log.warn("Could not check the replica lag, reads go to the primary until it answers", e);
+            }
+
+            failing = true;
+        }
+
+        if (wasUsable && !usable && lagSeconds >= 0) {
+            log.warn("Replica is {} s behind the primary (allowed {} s), reads go to the primary until it catches up", lagSeconds, maxLagSeconds);
+        } else if (!wasUsable && usable) {
+            log.info("Replica is {} s behind the primary, reads go to it again", lagSeconds);
+        }
+
+        if (routing != null) {
+            routing.expireSticky();
+        }
+    }
+}
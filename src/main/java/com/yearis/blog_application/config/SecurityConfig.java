@@ -65,11 +65,17 @@ public class SecurityConfig {
                         // this for reading posts or comments only
                         .requestMatchers(HttpMethod.GET, "/api/posts/**").permitAll()
 
+                        // the POST variant of the batch read, only a POST because the ids don't fit in a URL
+                        .requestMatchers(HttpMethod.POST, "/api/posts/batch").permitAll()
+
                         // swagger docs
                         .requestMatchers( "/swagger-ui/**", "/v3/api-docs/**",
                                 "/swagger-resources/**", "/webjars/**",
                                 "/docs").permitAll()
 
+                        // maintenance endpoints are for admins only
+                        .requestMatchers("/api/admin/**").hasRole("ADMIN")
+
                         .anyRequest().authenticated()
 
         );
@@ -0,0 +1,64 @@
+package com.yearis.blog_application.controller;
+
+import com.yearis.blog_application.payload.request.ImportRequest;
+import com.yearis.blog_application.payload.response.ImportResponse;
+import com.yearis.blog_application.payload.response.ReconciliationResponse;
+import com.yearis.blog_application.service.ImportService;
+import com.yearis.blog_application.service.LikeReconciliationService;
+import io.swagger.v3.oas.annotations.Operation;
+import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.validation.Valid;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.bind.annotation.PostMapping;
+import org.springframework.web.bind.annotation.RequestBody;
+import org.springframework.web.bind.annotation.RequestMapping;
+import org.springframework.web.bind.annotation.RestController;
+
+@Tag(name = "Admin Rest API Endpoints", description = "Maintenance operations, only for admins")
+@RestController
+@RequestMapping("/api/admin")
+public class AdminController {
+
+    private final LikeReconciliationService likeReconciliationService;
+    private final ImportService importService;
+
+    public AdminController(LikeReconciliationService likeReconciliationService, ImportService importService) {
+        this.likeReconciliationService = likeReconciliationService;
+        this.importService = importService;
+    }
+
+    /// --- Maintenance Operations ---
+
+    // to fix the like counters of posts and comments right now instead of waiting for the nightly job
+    @Operation(summary = "Reconcile like counters", description = "Recompute the likes of every post and comment from the likes table and fix the ones that drifted")
+    @PostMapping("/reconciliation/likes")
+    public ResponseEntity<ReconciliationResponse> reconcileLikes() {
+
+        ReconciliationResponse response = likeReconciliationService.reconcileLikes();
+
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    // to fix the comment/reply counters, e.g. right after deleting comments whose replies went with them
+    @Operation(summary = "Reconcile comment counters", description = "Recompute the comment count of every post and the reply count of every comment from the comments table and fix the ones that drifted")
+    @PostMapping("/reconciliation/comments")
+    public ResponseEntity<ReconciliationResponse> reconcileCommentCounts() {
+
+        ReconciliationResponse response = likeReconciliationService.reconcileCommentCounts();
+
+        return new ResponseEntity<>(response, HttpStatus.OK);
+    }
+
+    /// --- Bulk Operations ---
+
+    // to bring in posts and comments written elsewhere, they are inserted in batches in one transaction
+    @Operation(summary = "Import posts", description = "Import posts with their comments for existing users, all of them or none. The response tells how many rows per second were written")
+    @PostMapping("/import")
+    public ResponseEntity<ImportResponse> importPosts(@Valid @RequestBody ImportRequest importRequest) {
+
+        ImportResponse response = importService.importPosts(importRequest);
+
+        return new ResponseEntity<>(response, HttpStatus.CREATED);
+    }
+}
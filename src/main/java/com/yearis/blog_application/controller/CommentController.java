@@ -1,7 +1,10 @@
 package com.yearis.blog_application.controller;
 
 import com.yearis.blog_application.payload.request.CommentRequest;
+import com.yearis.blog_application.payload.response.CommentContextResponse;
 import com.yearis.blog_application.payload.response.CommentResponse;
+import com.yearis.blog_application.payload.response.CommentThreadResponse;
+import com.yearis.blog_application.payload.response.ResourceVersion;
 import com.yearis.blog_application.service.CommentService;
 import com.yearis.blog_application.service.LikeService;
 import io.swagger.v3.oas.annotations.Operation;
@@ -11,8 +14,10 @@ import jakarta.validation.Valid;
 import org.springframework.http.HttpStatus;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
+import java.util.Optional;
 
 @Tag(name = "Comment Rest API Endpoints", description = "Operations related to comments")
 @RestController
@@ -54,7 +59,16 @@ public class CommentController {
     @GetMapping("/{commentId}")
     public ResponseEntity<CommentResponse> getCommentById(
             @Parameter(description = "ID of the post where parent comment is located") @PathVariable Long postId,
-            @Parameter(description = "ID of the parent comment of the reply") @PathVariable Long commentId) {
+            @Parameter(description = "ID of the parent comment of the reply") @PathVariable Long commentId,
+            WebRequest webRequest) {
+
+        // if the client already has this version we answer 304 without loading the comment
+        // (when it doesn't exist we skip this, so the normal path gives the right error)
+        Optional<ResourceVersion> version = commentService.findCommentVersion(postId, commentId);
+
+        if (version.isPresent() && ConditionalRequests.isNotModified(webRequest, version.get())) {
+            return null;
+        }
 
         // we find our comment
         CommentResponse comment = commentService.getCommentById(postId, commentId);
@@ -68,7 +82,12 @@ public class CommentController {
     public ResponseEntity<List<CommentResponse>> getCommentsByPostId(
             @Parameter(description = "ID of the post to get its comments") @PathVariable Long postId,
             @RequestParam(value = "pageNo", defaultValue = "0", required = false) int pageNo,
-            @RequestParam(value = "pageSize", defaultValue = "10", required = false) int pageSize) {
+            @RequestParam(value = "pageSize", defaultValue = "10", required = false) int pageSize,
+            WebRequest webRequest) {
+
+        if (ConditionalRequests.isNotModified(webRequest, commentService.findCommentsVersion(postId, pageNo, pageSize))) {
+            return null;
+        }
 
         List<CommentResponse> comments = commentService.getCommentsByPostId(postId, pageNo, pageSize);
 
@@ -82,13 +101,58 @@ public class CommentController {
             @Parameter(description = "ID of the post where parent comment is located") @PathVariable Long postId,
             @Parameter(description = "ID of the parent comment of the reply") @PathVariable Long commentId,
             @RequestParam(value = "pageNo", defaultValue = "0", required = false) int pageNo,
-            @RequestParam(value = "pageSize", defaultValue = "10", required = false) int pageSize) {
+            @RequestParam(value = "pageSize", defaultValue = "10", required = false) int pageSize,
+            WebRequest webRequest) {
+
+        if (ConditionalRequests.isNotModified(webRequest, commentService.findRepliesVersion(postId, commentId, pageNo, pageSize))) {
+            return null;
+        }
 
         List<CommentResponse> replies = commentService.getRepliesByCommentId(postId, commentId, pageNo, pageSize);
 
         return new ResponseEntity<>(replies, HttpStatus.OK);
     }
 
+    // find the whole thread of a post (root comments with their replies, nested)
+    @Operation(summary = "Get the comment tree of a post", description = "Retrieve the comments of a post with their replies nested under them, in one request. moreReplies/moreComments tell how many were left out")
+    @GetMapping("/tree")
+    public ResponseEntity<CommentThreadResponse> getCommentTree(
+            @Parameter(description = "ID of the post to get its comments") @PathVariable Long postId,
+            @Parameter(description = "How many levels of replies to include, 1 is only the root comments") @RequestParam(value = "depth", defaultValue = "3", required = false) int depth,
+            @Parameter(description = "The most root comments, and replies per comment, to include") @RequestParam(value = "limitPerLevel", defaultValue = "10", required = false) int limitPerLevel) {
+
+        CommentThreadResponse thread = commentService.getCommentTree(postId, depth, limitPerLevel);
+
+        return new ResponseEntity<>(thread, HttpStatus.OK);
+    }
+
+    // find a comment with the comments it replies to (for a permalink)
+    @Operation(summary = "Get a comment with its context", description = "Retrieve a comment, the chain of comments it replies to (root first) and how many replies it has at every level")
+    @GetMapping("/{commentId}/context")
+    public ResponseEntity<CommentContextResponse> getCommentContext(
+            @Parameter(description = "ID of the post where the comment is located") @PathVariable Long postId,
+            @Parameter(description = "ID of the comment") @PathVariable Long commentId) {
+
+        CommentContextResponse context = commentService.getCommentContext(postId, commentId);
+
+        return new ResponseEntity<>(context, HttpStatus.OK);
+    }
+
+    // find every reply under a comment, not only the direct ones
+    @Operation(summary = "Get the subtree of a comment", description = "Retrieve the replies of a comment at every level down to depth, flat and in thread order (each reply right after its parent)")
+    @GetMapping("/{commentId}/subtree")
+    public ResponseEntity<List<CommentResponse>> getCommentSubtree(
+            @Parameter(description = "ID of the post where the comment is located") @PathVariable Long postId,
+            @Parameter(description = "ID of the comment") @PathVariable Long commentId,
+            @Parameter(description = "How many levels below the comment to include") @RequestParam(value = "depth", defaultValue = "5", required = false) int depth,
+            @RequestParam(value = "pageNo", defaultValue = "0", required = false) int pageNo,
+            @RequestParam(value = "pageSize", defaultValue = "50", required = false) int pageSize) {
+
+        List<CommentResponse> replies = commentService.getCommentSubtree(postId, commentId, depth, pageNo, pageSize);
+
+        return new ResponseEntity<>(replies, HttpStatus.OK);
+    }
+
     /// U: Update
 
     // update the comment body
@@ -0,0 +1,34 @@
+package com.yearis.blog_application.controller;
+
+import com.yearis.blog_application.payload.response.ResourceVersion;
+import org.springframework.web.context.request.WebRequest;
+
+import java.time.ZoneId;
+
+// our GETs that clients poll check the version first, and answer 304 when the client already has it
+final class ConditionalRequests {
+
+    private ConditionalRequests() {
+    }
+
+    // true when the client's copy is still current, the handler should then return null and Spring sends the 304
+    // either way the ETag (and Last-Modified) headers are set on our response
+    static boolean isNotModified(WebRequest webRequest, ResourceVersion version) {
+
+        if (version.getLastModified() == null) {
+            return webRequest.checkNotModified(version.getEtag());
+        }
+
+        long lastModified = version.getLastModified().atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+
+        return webRequest.checkNotModified(version.getEtag(), lastModified);
+    }
+
+    // the same version of the gzip'd representation, e.g. "12.3" -> "12.3-gzip"
+    static ResourceVersion gzipVariant(ResourceVersion version) {
+
+        String etag = version.getEtag();
+
+        return new ResourceVersion(etag.substring(0, etag.length() - 1) + "-gzip\"", version.getLastModified());
+    }
+}
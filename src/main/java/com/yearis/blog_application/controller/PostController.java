@@ -1,19 +1,37 @@
 package com.yearis.blog_application.controller;
 
+import com.yearis.blog_application.payload.request.PostBatchRequest;
 import com.yearis.blog_application.payload.request.PostRequest;
+import com.yearis.blog_application.payload.response.CursorPageResponse;
+import com.yearis.blog_application.payload.response.PostBatchResponse;
+import com.yearis.blog_application.payload.response.PostJsonResponse;
 import com.yearis.blog_application.payload.response.PostResponse;
+import com.yearis.blog_application.payload.response.PostSummaryResponse;
+import com.yearis.blog_application.payload.response.PostViewsResponse;
+import com.yearis.blog_application.payload.response.ResourceVersion;
+import com.yearis.blog_application.payload.response.SuggestionResponse;
+import com.yearis.blog_application.security.UserPrincipal;
 import com.yearis.blog_application.service.LikeService;
 import com.yearis.blog_application.service.PostService;
 import io.swagger.v3.oas.annotations.Operation;
 import io.swagger.v3.oas.annotations.Parameter;
+import io.swagger.v3.oas.annotations.media.Content;
+import io.swagger.v3.oas.annotations.media.Schema;
+import io.swagger.v3.oas.annotations.responses.ApiResponse;
 import io.swagger.v3.oas.annotations.tags.Tag;
+import jakarta.servlet.http.HttpServletRequest;
 import jakarta.validation.Valid;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.http.HttpHeaders;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
+import org.springframework.security.core.annotation.AuthenticationPrincipal;
 import org.springframework.web.bind.annotation.*;
+import org.springframework.web.context.request.WebRequest;
 
 import java.util.List;
+import java.util.Optional;
 
 @Tag(name = "Post Rest API Endpoints", description = "Operations related to posts")
 @RestController
@@ -51,15 +69,79 @@ public class PostController {
     /// R: Read/Find/Get
 
     // to get post by id
-    @Operation(summary = "Get a post by ID", description = "Retrieve a specific post by ID")
+    // the post comes already serialized, we write its bytes as they are
+    @Operation(summary = "Get a post by ID", description = "Retrieve a specific post by ID",
+            responses = @ApiResponse(responseCode = "200", content = @Content(mediaType = "application/json", schema = @Schema(implementation = PostResponse.class))))
     @GetMapping("/{id}")
-    public ResponseEntity<PostResponse> getPostById(
-            @Parameter(description = "ID of the post to retrieve") @PathVariable Long id) {
+    public ResponseEntity<byte[]> getPostById(
+            @Parameter(description = "ID of the post to retrieve") @PathVariable Long id,
+            @RequestHeader(value = HttpHeaders.ACCEPT_ENCODING, required = false) String acceptEncoding,
+            @AuthenticationPrincipal UserPrincipal principal,
+            HttpServletRequest request,
+            WebRequest webRequest) {
+
+        boolean acceptsGzip = acceptEncoding != null && acceptEncoding.contains("gzip");
+
+        // if the client already has this version we answer 304 without loading the post
+        // (when it doesn't exist we skip this, so the normal path gives the 404)
+        Optional<ResourceVersion> version = postService.findPostVersion(id);
+
+        // the gzip'd and the plain JSON are different bytes, so they can't share a strong ETag:
+        // a client that accepts gzip gets the ETag of our gzip variant (also when the post is too small to be compressed)
+        Optional<ResourceVersion> variant = acceptsGzip ? version.map(ConditionalRequests::gzipVariant) : version;
+
+        if (variant.isPresent() && ConditionalRequests.isNotModified(webRequest, variant.get())) {
+            return null;
+        }
 
         // we find our post using the id
-        PostResponse post = postService.findPostById(id);
+        PostJsonResponse post = postService.findPostJsonById(id, version.map(ResourceVersion::getEtag).orElse(null));
+
+        // only a read that actually sent the post counts as a view, a 304 is just a client checking for changes
+        postService.recordView(id, principal != null ? principal.getId() : null, request.getRemoteAddr());
+
+        ResponseEntity.BodyBuilder response = ResponseEntity.ok()
+                .contentType(MediaType.APPLICATION_JSON)
+                .header(HttpHeaders.VARY, HttpHeaders.ACCEPT_ENCODING);
+
+        if (post.getGzippedJson() != null && acceptsGzip) {
+            return response.header(HttpHeaders.CONTENT_ENCODING, "gzip").body(post.getGzippedJson());
+        }
+
+        return response.body(post.getJson());
+    }
+
+    // to get how often a post was read
+    @Operation(summary = "Get the views of a post", description = "How often a post was read, and an estimate of by how many different users. Updated every few seconds")
+    @GetMapping("/{id}/views")
+    public ResponseEntity<PostViewsResponse> getPostViews(
+            @Parameter(description = "ID of the post") @PathVariable Long id) {
+
+        PostViewsResponse views = postService.findPostViews(id);
+
+        return new ResponseEntity<>(views, HttpStatus.OK);
+    }
+
+    // to get many posts by id at once, e.g. to hydrate a list of ids (?ids=1,2,3)
+    @Operation(summary = "Get many posts by ID", description = "Retrieve a batch of posts by their IDs in one request. The order of the IDs is kept, IDs that don't exist are listed in missingIds")
+    @GetMapping("/batch")
+    public ResponseEntity<PostBatchResponse> getPostsByIds(
+            @Parameter(description = "Comma separated IDs of the posts to retrieve") @RequestParam("ids") List<Long> ids) {
+
+        PostBatchResponse posts = postService.findPostsByIds(ids);
 
-        return new ResponseEntity<>(post, HttpStatus.OK);
+        return new ResponseEntity<>(posts, HttpStatus.OK);
+    }
+
+    // same as above, for lists of ids too long for a URL
+    @Operation(summary = "Get many posts by ID (POST)", description = "Same as the GET batch, with the IDs in the request body")
+    @PostMapping("/batch")
+    public ResponseEntity<PostBatchResponse> getPostsByIdsInBody(
+            @Parameter(description = "IDs of the posts to retrieve") @Valid @RequestBody PostBatchRequest postBatchRequest) {
+
+        PostBatchResponse posts = postService.findPostsByIds(postBatchRequest.getIds());
+
+        return new ResponseEntity<>(posts, HttpStatus.OK);
     }
 
     // to get post by title
@@ -75,6 +157,44 @@ public class PostController {
         return new ResponseEntity<>(posts, HttpStatus.OK);
     }
 
+    // to search posts by the words in their title and content (?q=)
+    @Operation(summary = "Search posts", description = "Full text search over title and content. Every word has to match, the most relevant posts come first")
+    @GetMapping(value = "/search", params = "q")
+    public ResponseEntity<List<PostResponse>> searchPosts(
+            @Parameter(description = "Words to search for") @RequestParam("q") String query,
+            @RequestParam(value = "pageNo", defaultValue = "0", required = false) int pageNo,
+            @RequestParam(value = "pageSize", defaultValue = "10", required = false) int pageSize) {
+
+        List<PostResponse> posts = postService.searchPosts(query, pageNo, pageSize);
+
+        return new ResponseEntity<>(posts, HttpStatus.OK);
+    }
+
+    // to complete a post title while it is typed
+    @Operation(summary = "Suggest posts", description = "Titles with a word starting with what was typed so far, most liked first. Meant for a search box typeahead")
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggestionResponse>> suggestPosts(
+            @Parameter(description = "What the user typed so far") @RequestParam("q") String prefix,
+            @RequestParam(value = "limit", defaultValue = "5", required = false) int limit) {
+
+        List<SuggestionResponse> suggestions = postService.suggestPosts(prefix, limit);
+
+        return new ResponseEntity<>(suggestions, HttpStatus.OK);
+    }
+
+    // to get post summaries by title (?view=summary)
+    @Operation(summary = "Get post summaries by Title", description = "Same as search, but each post only has a short excerpt of its content")
+    @GetMapping(value = "/search", params = "view=summary")
+    public ResponseEntity<List<PostSummaryResponse>> getPostSummariesByTitle(
+            @Parameter(description = "Title of the post to retrieve") @RequestParam String title,
+            @RequestParam(value = "pageNo", defaultValue = "0", required = false) int pageNo,
+            @RequestParam(value = "pageSize", defaultValue = "10", required = false) int pageSize) {
+
+        List<PostSummaryResponse> posts = postService.findPostSummariesByTitle(title, pageNo, pageSize);
+
+        return new ResponseEntity<>(posts, HttpStatus.OK);
+    }
+
     // to get all the posts
     @Operation(summary = "Get all the posts", description = "Retrieve a list of all available posts")
     @GetMapping
@@ -87,6 +207,45 @@ public class PostController {
         return new ResponseEntity<>(posts, HttpStatus.OK);
     }
 
+    // to get the hot or top posts (?sort=hot|top&window=day|week|all)
+    @Operation(summary = "Get the hot or top posts", description = "hot ranks posts by likes and comments, decayed by age. top ranks them by likes, over the last day, week or all time")
+    @GetMapping(params = "sort")
+    public ResponseEntity<List<PostResponse>> getRankedPosts(
+            @Parameter(description = "hot or top") @RequestParam("sort") String sort,
+            @Parameter(description = "day, week or all (only used by top)") @RequestParam(value = "window", defaultValue = "all", required = false) String window,
+            @RequestParam(value = "pageNo", defaultValue = "0", required = false) int pageNo,
+            @RequestParam(value = "pageSize", defaultValue = "10", required = false) int pageSize) {
+
+        List<PostResponse> posts = postService.findRankedPosts(sort, window, pageNo, pageSize);
+
+        return new ResponseEntity<>(posts, HttpStatus.OK);
+    }
+
+    // to get summaries of all the posts (?view=summary)
+    @Operation(summary = "Get all the post summaries", description = "Same as get all the posts, but each post only has a short excerpt of its content")
+    @GetMapping(params = "view=summary")
+    public ResponseEntity<List<PostSummaryResponse>> getAllPostSummaries(
+            @RequestParam(value = "pageNo", defaultValue = "0", required = false) int pageNo,
+            @RequestParam(value = "pageSize", defaultValue = "10", required = false) int pageSize) {
+
+        List<PostSummaryResponse> posts = postService.findAllPostSummaries(pageNo, pageSize);
+
+        return new ResponseEntity<>(posts, HttpStatus.OK);
+    }
+
+    // to get the posts page by page with a cursor, this stays fast no matter how deep you scroll
+    @Operation(summary = "Get the posts feed", description = "Retrieve the newest posts (optionally of one user) using cursor pagination. Pass the returned nextCursor to get the next page")
+    @GetMapping("/feed")
+    public ResponseEntity<CursorPageResponse<PostResponse>> getPostFeed(
+            @Parameter(description = "nextCursor of the previous page, empty for the first page") @RequestParam(value = "cursor", required = false) String cursor,
+            @Parameter(description = "Only the posts of this user") @RequestParam(value = "userId", required = false) Long userId,
+            @RequestParam(value = "pageSize", defaultValue = "10", required = false) int pageSize) {
+
+        CursorPageResponse<PostResponse> feed = postService.findPostFeed(userId, cursor, pageSize);
+
+        return new ResponseEntity<>(feed, HttpStatus.OK);
+    }
+
     /// U: Update
 
     // update a post title/content (ig we would need 2 methods)
@@ -4,6 +4,8 @@ import com.yearis.blog_application.payload.request.PasswordChangeRequest;
 import com.yearis.blog_application.payload.request.UserUpdateRequest;
 import com.yearis.blog_application.payload.response.CommentResponse;
 import com.yearis.blog_application.payload.response.PostResponse;
+import com.yearis.blog_application.payload.response.PostSummaryResponse;
+import com.yearis.blog_application.payload.response.SuggestionResponse;
 import com.yearis.blog_application.payload.response.UserProfileResponse;
 import com.yearis.blog_application.service.CommentService;
 import com.yearis.blog_application.service.PostService;
@@ -87,14 +89,28 @@ public class UserController {
     @Operation(summary = "Search users", description = "Search for users by username.")
     @GetMapping("/search")
     public ResponseEntity<List<UserProfileResponse>> searchUsers(
-            @Parameter(description = "The username to search for") @RequestParam("username") String username) {
+            @Parameter(description = "The username to search for") @RequestParam("username") String username,
+            @RequestParam(value = "pageNo", defaultValue = "0", required = false) int pageNo,
+            @RequestParam(value = "pageSize", defaultValue = "10", required = false) int pageSize) {
 
         // logic to search users
-        List<UserProfileResponse> result = userService.searchUsers(username);
+        List<UserProfileResponse> result = userService.searchUsers(username, pageNo, pageSize);
 
         return new ResponseEntity<>(result, HttpStatus.OK);
     }
 
+    // to complete a username while it is typed. (Public)
+    @Operation(summary = "Suggest users", description = "Usernames starting with what was typed so far, newest users first. Meant for a search box typeahead")
+    @GetMapping("/suggest")
+    public ResponseEntity<List<SuggestionResponse>> suggestUsers(
+            @Parameter(description = "What the user typed so far") @RequestParam("q") String prefix,
+            @RequestParam(value = "limit", defaultValue = "5", required = false) int limit) {
+
+        List<SuggestionResponse> suggestions = userService.suggestUsers(prefix, limit);
+
+        return new ResponseEntity<>(suggestions, HttpStatus.OK);
+    }
+
     // to show the posts created by a user. (Public)
     @Operation(summary = "Get posts by user", description = "Get all the posts created by user. This is a public api anyone can use to see a users created posts")
     @GetMapping("/{userId}/posts")
@@ -108,6 +124,19 @@ public class UserController {
         return new ResponseEntity<>(posts, HttpStatus.OK);
     }
 
+    // to show summaries of the posts created by a user (?view=summary). (Public)
+    @Operation(summary = "Get post summaries by user", description = "Same as get posts by user, but each post only has a short excerpt of its content")
+    @GetMapping(value = "/{userId}/posts", params = "view=summary")
+    public ResponseEntity<List<PostSummaryResponse>> findPostSummariesCreatedByUser(
+            @Parameter(description = "Id of the user whose post we want to view") @PathVariable Long userId,
+            @RequestParam(value = "pageNo", defaultValue = "0", required = false) int pageNo,
+            @RequestParam(value = "pageSize", defaultValue = "10", required = false) int pageSize) {
+
+        List<PostSummaryResponse> posts = postService.findPostSummariesByUserId(userId, pageNo, pageSize);
+
+        return new ResponseEntity<>(posts, HttpStatus.OK);
+    }
+
     // to get the profile of a user. (Public)
     @Operation(summary = "Get User Profile", description = "Get the public profile (Username, About, Join Date) of any user by ID")
     @GetMapping("/{id}")
@@ -6,12 +6,22 @@ import jakarta.validation.constraints.NotNull;
 import jakarta.validation.constraints.Size;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
 import java.util.List;
 
 @Entity
-@Table(name = "comments")
+@Table(
+        name = "comments",
+        // the comment pages of a post, of a parent and of a user (see db/migration/V9__performance_indexes.sql)
+        indexes = {
+                @Index(name = "idx_comments_post_id_parent_id_likes", columnList = "post_id, parent_id, likes"),
+                @Index(name = "idx_comments_parent_id_created_date", columnList = "parent_id, created_date"),
+                @Index(name = "idx_comments_user_id_created_date", columnList = "user_id, created_date"),
+                @Index(name = "idx_comments_path", columnList = "path")
+        }
+)
 @NoArgsConstructor // using lombok to generate a no arg constructor
 @AllArgsConstructor // using lombok to generate all arg constructor
 // @Data // using lombok to generate getter/setter and toString methods (BUT this is dangerous)
@@ -22,7 +32,10 @@ import java.util.List;
 public class Comment {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // same as Post.id, from id_generators in blocks of 50
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "comment_id")
+    @TableGenerator(name = "comment_id", table = "id_generators", pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "comments", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -36,6 +49,15 @@ public class Comment {
     @Column(name = "created_date")
     private LocalDateTime createdDate;
 
+    // same as Post.version: edits bump it through the entity, likes through CommentRepository.updateLikes
+    @Version
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    @UpdateTimestamp
+    @Column(name = "last_modified_date")
+    private LocalDateTime lastModifiedDate;
+
     @Builder.Default
     @Column(name = "edited", nullable = false)
     private boolean isEdited = false;
@@ -45,10 +67,21 @@ public class Comment {
     @Column(name = "likes")
     private int likes = 1;
 
+    // how many direct replies the comment has, same as Post.commentCount
+    @Builder.Default
+    @Column(name = "reply_count", nullable = false)
+    private int replyCount = 0;
+
+    // the ids from the root comment down to this one (see CommentPath), set right after the insert as it contains our own id
+    // a subtree is a prefix of it, so subtree questions are one range scan instead of a recursive walk
+    @Column(name = "path", length = 1024)
+    private String path;
+
     // this is for relationship to comment from post and user
 
     // Relationship: Many comment -> 1 user
-    @ManyToOne
+    // lazy like Post.author, CommentRepository fetches it where a response needs the username
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(
             name = "user_id",               // This creates a column named 'user_id' in SQL Table
             referencedColumnName = "id",    // Links to 'id' column in users table
@@ -7,7 +7,18 @@ import org.hibernate.annotations.CreationTimestamp;
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "likes")
+@Table(
+        name = "likes",
+        // a user can like a post or a comment only once, our like toggle relies on these
+        uniqueConstraints = {
+                @UniqueConstraint(name = "user_post_like", columnNames = {"user_id", "post_id"}),
+                @UniqueConstraint(name = "user_comment_like", columnNames = {"user_id", "comment_id"})
+        },
+        // the liked posts/comments of a user, newest first (see db/migration/V9__performance_indexes.sql)
+        indexes = {
+                @Index(name = "idx_likes_user_id_created_date", columnList = "user_id, created_date")
+        }
+)
 @NoArgsConstructor
 @AllArgsConstructor
 @Getter
@@ -17,7 +28,11 @@ import java.time.LocalDateTime;
 public class Like {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // same as our other entities, so the first like of a new post/comment goes out in the flush with it.
+    // The native INSERT IGNORE of our like toggle takes its id from this generator too (LikeIdGenerator)
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "like_id")
+    @TableGenerator(name = "like_id", table = "id_generators", pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "likes", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -5,11 +5,19 @@ import jakarta.validation.constraints.NotBlank;
 import jakarta.validation.constraints.Size;
 import lombok.*;
 import org.hibernate.annotations.CreationTimestamp;
+import org.hibernate.annotations.UpdateTimestamp;
 
 import java.time.LocalDateTime;
 
 @Entity
-@Table(name = "posts")
+@Table(
+        name = "posts",
+        // our feeds are sorted by newest first, these let them seek instead of sorting the whole table
+        indexes = {
+                @Index(name = "idx_posts_created_date_id", columnList = "created_date, id"),
+                @Index(name = "idx_posts_user_id_created_date", columnList = "user_id, created_date, id")
+        }
+)
 @NoArgsConstructor // using lombok to generate a no arg constructor
 @AllArgsConstructor // using lombok to generate all arg constructor
 // @Data // using lombok to generate getter/setter and toString methods (BUT this is dangerous)
@@ -20,7 +28,11 @@ import java.time.LocalDateTime;
 public class Post {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // ids come from our id_generators table in blocks of 50, unlike IDENTITY Hibernate knows the id before the insert
+    // so it can hold the insert back and send it in a JDBC batch with the others
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "post_id")
+    @TableGenerator(name = "post_id", table = "id_generators", pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "posts", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -39,6 +51,16 @@ public class Post {
     @Column(name = "created_date")
     private LocalDateTime createdDate;
 
+    // bumped on every edit and like, our ETags are built from it
+    // the atomic likes updates bump it (and last_modified_date) themselves, as they never go through the entity
+    @Version
+    @Column(name = "version", nullable = false)
+    private long version;
+
+    @UpdateTimestamp
+    @Column(name = "last_modified_date")
+    private LocalDateTime lastModifiedDate;
+
     @Builder.Default
     @Column(name = "edited", nullable = false)
     private boolean isEdited = false;
@@ -48,10 +70,17 @@ public class Post {
     @Column(name = "likes")
     private int likes = 1;
 
+    // a copy of how many comments (and replies) the post has, moved atomically by PostRepository.updateCommentCount
+    // and corrected by the reconciliation job when a cascade delete took comments away without telling it
+    @Builder.Default
+    @Column(name = "comment_count", nullable = false)
+    private int commentCount = 0;
+
     // this is for relationship to post from user
 
     // Relationship: Many post -> One user
-    @ManyToOne(fetch = FetchType.EAGER)
+    // lazy, the queries that map posts to responses fetch it with them (see PostRepository), the others never need it
+    @ManyToOne(fetch = FetchType.LAZY)
     @JoinColumn(
             name = "user_id",               // This creates a column named 'user_id' in SQL Table
             referencedColumnName = "id",    // Links to 'id' column in users table
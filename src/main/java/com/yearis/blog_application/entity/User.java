@@ -12,7 +12,13 @@ import java.time.LocalDateTime;
 import java.util.Set;
 
 @Entity
-@Table(name = "users")
+@Table(
+        name = "users",
+        // TokenVersionRegistry reads the versions bumped since its last refresh: WHERE token_version_changed_at > ?
+        indexes = {
+                @Index(name = "idx_users_token_version_changed_at", columnList = "token_version_changed_at")
+        }
+)
 @NoArgsConstructor // using lombok to generate a no arg constructor
 @AllArgsConstructor // using lombok to generate all arg constructor
 // @Data // using lombok to generate getter/setter and toString methods (BUT this is dangerous)
@@ -23,7 +29,10 @@ import java.util.Set;
 public class User {
 
     @Id
-    @GeneratedValue(strategy = GenerationType.IDENTITY)
+    // same as Post.id, from id_generators in blocks of 50
+    @GeneratedValue(strategy = GenerationType.TABLE, generator = "user_id")
+    @TableGenerator(name = "user_id", table = "id_generators", pkColumnName = "sequence_name", valueColumnName = "next_val",
+            pkColumnValue = "users", allocationSize = 50)
     @Column(name = "id")
     private Long id;
 
@@ -51,6 +60,15 @@ public class User {
     @Column(name = "joined_date", nullable = false, updatable = false)
     private LocalDateTime joinedDate;
 
+    // we bump this to revoke every token issued to the user before (e.g. on password change)
+    @Builder.Default
+    @Column(name = "token_version", nullable = false)
+    private int tokenVersion = 0;
+
+    // when we last bumped tokenVersion, null if we never did
+    @Column(name = "token_version_changed_at")
+    private LocalDateTime tokenVersionChangedAt;
+
     // this is for relationship to user from role
 
     // Relationship: Many users -> Many roles
@@ -2,6 +2,7 @@ package com.yearis.blog_application.exception;
 
 import com.yearis.blog_application.payload.response.ErrorResponse;
 import org.springframework.http.HttpStatus;
+import org.springframework.orm.ObjectOptimisticLockingFailureException;
 import org.springframework.http.ResponseEntity;
 import org.springframework.web.bind.annotation.ExceptionHandler;
 import org.springframework.web.bind.annotation.RestControllerAdvice;
@@ -41,4 +42,18 @@ public class GlobalExceptionHandler {
 
         return new ResponseEntity<>(error, exception.getStatus());
     }
+
+    // Our Exception Handler for an entity that changed between our read and our write (its @Version moved on)
+    @ExceptionHandler(ObjectOptimisticLockingFailureException.class)
+    public ResponseEntity<ErrorResponse> handleOptimisticLockingFailure(ObjectOptimisticLockingFailureException exception, WebRequest webRequest) {
+
+        ErrorResponse error = new ErrorResponse();
+
+        error.setStatusCode(HttpStatus.CONFLICT.value());
+        error.setMessage("It was changed by someone else in the meantime, please try again");
+        error.setTimeStamp(LocalDateTime.now());
+        error.setDetails(webRequest.getDescription(false));
+
+        return new ResponseEntity<>(error, HttpStatus.CONFLICT);
+    }
 }
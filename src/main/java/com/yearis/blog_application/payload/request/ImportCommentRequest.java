@@ -0,0 +1,19 @@
+package com.yearis.blog_application.payload.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+@Data
+public class ImportCommentRequest {
+
+    @NotNull(message = "Author id cannot be empty")
+    @Schema(description = "Id of the user the comment is imported for", example = "10001")
+    private Long authorId;
+
+    @NotBlank(message = "Comment cannot be empty")
+    @Size(min = 2, max = 1000, message = "Comment must be less than 1000 characters")
+    private String body;
+}
@@ -0,0 +1,31 @@
+package com.yearis.blog_application.payload.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotBlank;
+import jakarta.validation.constraints.NotNull;
+import jakarta.validation.constraints.Size;
+import lombok.Data;
+
+import java.util.List;
+
+// same rules as PostRequest, plus who wrote it as an admin imports for other users
+@Data
+public class ImportPostRequest {
+
+    @NotNull(message = "Author id cannot be empty")
+    @Schema(description = "Id of the user the post is imported for", example = "10001")
+    private Long authorId;
+
+    @NotBlank(message = "Title cannot be empty")
+    @Size(min = 10, max = 50, message = "Title must be between 10 and 50 characters")
+    private String title;
+
+    @NotBlank(message = "Content cannot be empty")
+    @Size(min = 20, max = 5000)
+    private String content;
+
+    // root comments only, can be null for a post without any
+    @Valid
+    private List<ImportCommentRequest> comments;
+}
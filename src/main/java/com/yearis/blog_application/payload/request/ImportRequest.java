@@ -0,0 +1,17 @@
+package com.yearis.blog_application.payload.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.Valid;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class ImportRequest {
+
+    @NotEmpty(message = "Posts cannot be empty")
+    @Valid
+    @Schema(description = "The posts to import, each with its comments")
+    private List<ImportPostRequest> posts;
+}
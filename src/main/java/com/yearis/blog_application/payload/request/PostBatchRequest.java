@@ -0,0 +1,15 @@
+package com.yearis.blog_application.payload.request;
+
+import io.swagger.v3.oas.annotations.media.Schema;
+import jakarta.validation.constraints.NotEmpty;
+import lombok.Data;
+
+import java.util.List;
+
+@Data
+public class PostBatchRequest {
+
+    @NotEmpty(message = "Ids cannot be empty")
+    @Schema(description = "Ids of the posts to fetch, the response keeps this order", example = "[10001, 10002, 10003]")
+    private List<Long> ids;
+}
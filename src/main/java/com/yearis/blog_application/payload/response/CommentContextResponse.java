@@ -0,0 +1,22 @@
+package com.yearis.blog_application.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// a comment with what a permalink to it shows around it
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommentContextResponse {
+
+    // the comments it replies to, root comment first
+    private List<CommentResponse> ancestors;
+
+    private CommentResponse comment;
+
+    // its replies at every level
+    private long descendantCount;
+}
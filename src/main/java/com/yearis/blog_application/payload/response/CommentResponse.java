@@ -12,6 +12,7 @@ public class CommentResponse {
     private LocalDateTime createdDate;
     private boolean isEdited;
     private int likes;
+    private int replyCount;
 
     // Flattened Author Info
     private Long authorId;
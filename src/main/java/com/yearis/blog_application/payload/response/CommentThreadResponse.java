@@ -0,0 +1,22 @@
+package com.yearis.blog_application.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+// the comments of a post as a tree, see GET /api/posts/{postId}/comments/tree
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommentThreadResponse {
+
+    private Long postId;
+
+    // the root comments, most liked first, each with its replies
+    private List<CommentTreeResponse> comments;
+
+    // root comments that are not in the tree, load them with GET /api/posts/{postId}/comments
+    private int moreComments;
+}
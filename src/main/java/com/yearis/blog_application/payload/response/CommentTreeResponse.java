@@ -0,0 +1,23 @@
+package com.yearis.blog_application.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// one comment of a thread with the replies we loaded under it
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CommentTreeResponse {
+
+    private CommentResponse comment;
+
+    private List<CommentTreeResponse> replies = new ArrayList<>();
+
+    // replies of this comment that are not in the tree (past limitPerLevel or deeper than depth),
+    // the frontend can show "n more replies" and load them with GET .../{commentId}/replies
+    private int moreReplies;
+}
@@ -0,0 +1,18 @@
+package com.yearis.blog_application.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class CursorPageResponse<T> {
+
+    private List<T> content;
+
+    // pass this back as ?cursor= to get the next page, null when there is nothing more
+    private String nextCursor;
+}
@@ -0,0 +1,15 @@
+package com.yearis.blog_application.payload.response;
+
+import lombok.Data;
+
+@Data
+public class ImportResponse {
+
+    private long postsImported;
+    private long commentsImported;
+
+    private long durationMs;
+
+    // posts and comments together, to compare runs with different batch settings
+    private long rowsPerSecond;
+}
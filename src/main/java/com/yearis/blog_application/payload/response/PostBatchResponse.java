@@ -0,0 +1,19 @@
+package com.yearis.blog_application.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.util.List;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostBatchResponse {
+
+    // the posts that were found, in the order they were asked for
+    private List<PostResponse> posts;
+
+    // the ids that don't exist (anymore), the rest of the batch is still returned
+    private List<Long> missingIds;
+}
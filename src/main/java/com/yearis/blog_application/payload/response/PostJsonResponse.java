@@ -0,0 +1,18 @@
+package com.yearis.blog_application.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+// a PostResponse that is already serialized, so it can be written to the client as it is
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostJsonResponse {
+
+    // the UTF-8 JSON of the PostResponse
+    private byte[] json;
+
+    // the same JSON gzip'd, null when the post is too small to be worth it
+    private byte[] gzippedJson;
+}
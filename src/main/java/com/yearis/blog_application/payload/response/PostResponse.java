@@ -13,6 +13,7 @@ public class PostResponse {
     private LocalDateTime createdDate;
     private boolean isEdited;
     private int likes;
+    private int commentCount;
 
     // We flatten the User object here.
     // Instead of returning the whole User entity (security risk),
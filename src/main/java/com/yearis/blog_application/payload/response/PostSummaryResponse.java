@@ -0,0 +1,20 @@
+package com.yearis.blog_application.payload.response;
+
+import lombok.Data;
+
+import java.time.LocalDateTime;
+
+// what our post lists show: everything from PostResponse but only the start of the content
+@Data
+public class PostSummaryResponse {
+
+    private Long id;
+    private String title;
+    private String excerpt;
+    private LocalDateTime createdDate;
+    private boolean isEdited;
+    private int likes;
+
+    private Long authorId;
+    private String authorName;
+}
@@ -0,0 +1,19 @@
+package com.yearis.blog_application.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class PostViewsResponse {
+
+    private Long postId;
+
+    // every read of the post, including the same user reading it again
+    private long views;
+
+    // an estimate (within a few percent) of how many different users/addresses read it
+    private long uniqueViewers;
+}
@@ -0,0 +1,15 @@
+package com.yearis.blog_application.payload.response;
+
+import lombok.Data;
+
+@Data
+public class ReconciliationResponse {
+
+    private long postsScanned;
+    private long postsCorrected;
+
+    private long commentsScanned;
+    private long commentsCorrected;
+
+    private long durationMs;
+}
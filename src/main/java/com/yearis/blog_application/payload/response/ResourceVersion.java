@@ -0,0 +1,20 @@
+package com.yearis.blog_application.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+import java.time.LocalDateTime;
+
+// what a conditional GET (If-None-Match / If-Modified-Since) is checked against, never sent as a body
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class ResourceVersion {
+
+    // a strong ETag, already quoted
+    private String etag;
+
+    // null for lists, a removed item would not make the newest date any newer
+    private LocalDateTime lastModified;
+}
@@ -0,0 +1,17 @@
+package com.yearis.blog_application.payload.response;
+
+import lombok.AllArgsConstructor;
+import lombok.Data;
+import lombok.NoArgsConstructor;
+
+@Data
+@NoArgsConstructor
+@AllArgsConstructor
+public class SuggestionResponse {
+
+    // the post id or user id, so the client can link straight to it
+    private Long id;
+
+    // the full title or username that completes what the user typed
+    private String text;
+}
@@ -3,19 +3,97 @@ package com.yearis.blog_application.repository;
 import com.yearis.blog_application.entity.Comment;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface CommentRepository extends JpaRepository<Comment, Long> {
 
+    // NOTE: Comment.author is lazy, the queries below fetch it with the comments as every response shows the username
+    // (the post and the parent are only read by id, which a lazy reference has without loading anything)
+
+    @Override
+    @EntityGraph(attributePaths = "author")
+    Optional<Comment> findById(Long id);
+
     // 1. For the Feed (Root Comments only)
+    @EntityGraph(attributePaths = "author")
     Page<Comment> findByPostIdAndParentIdIsNull(Long postId, Pageable pageable);
 
     // 2. For the Replies (Children only)
+    @EntityGraph(attributePaths = "author")
     Page<Comment> findByParentId(Long parentId, Pageable pageable);
 
+    @EntityGraph(attributePaths = "author")
+    Page<Comment> findByAuthorId(Long userId, Pageable pageable);
+
+    // for conditional GETs: only what our ETags are made of, the body is never read
+    // the response also carries the author's name, a rename bumps the author's token version so that's part of it too
+    @Query("SELECT c.id AS id, c.version AS version, a.tokenVersion AS authorVersion, c.lastModifiedDate AS lastModifiedDate " +
+            "FROM Comment c LEFT JOIN c.author a WHERE c.id = :commentId AND c.post.id = :postId")
+    Optional<VersionView> findVersionByIdAndPostId(@Param("commentId") Long commentId, @Param("postId") Long postId);
+
+    // the versions of one page of root comments, same order as findByPostIdAndParentIdIsNull
+    @Query("SELECT c.id AS id, c.version AS version, a.tokenVersion AS authorVersion, c.lastModifiedDate AS lastModifiedDate " +
+            "FROM Comment c LEFT JOIN c.author a WHERE c.post.id = :postId AND c.parent IS NULL")
+    Slice<VersionView> findVersionsByPostId(@Param("postId") Long postId, Pageable pageable);
+
+    // the versions of one page of replies, same order as findByParentId
+    @Query("SELECT c.id AS id, c.version AS version, a.tokenVersion AS authorVersion, c.lastModifiedDate AS lastModifiedDate " +
+            "FROM Comment c LEFT JOIN c.author a WHERE c.parent.id = :parentId AND c.post.id = :postId")
+    Slice<VersionView> findVersionsByParentId(@Param("parentId") Long parentId, @Param("postId") Long postId, Pageable pageable);
+
+    interface VersionView {
+
+        Long getId();
+
+        long getVersion();
+
+        Integer getAuthorVersion();
+
+        LocalDateTime getLastModifiedDate();
+    }
+
+    // subtree queries on the materialized path (see CommentPath), each one range scan on idx_comments_path
+
+    // the replies of a comment at every level, at most maxLength deep, in thread order
+    @EntityGraph(attributePaths = "author")
+    @Query("SELECT c FROM Comment c WHERE c.path LIKE :pattern AND LENGTH(c.path) <= :maxLength ORDER BY c.path")
+    Slice<Comment> findSubtree(@Param("pattern") String pattern, @Param("maxLength") int maxLength, Pageable pageable);
+
+    @Query("SELECT COUNT(c) FROM Comment c WHERE c.path LIKE :pattern")
+    long countSubtree(@Param("pattern") String pattern);
+
+    // the ancestors of a comment by their ids (taken from its path), root first
+    @EntityGraph(attributePaths = "author")
+    List<Comment> findByIdInOrderByPathAsc(Collection<Long> ids);
+
+    // to check that a comment belongs to a post without loading it
+    boolean existsByIdAndPostId(Long id, Long postId);
+
+    // whether a comment has any reply at all, for when its reply_count says 0 (one probe on idx_comments_parent_id_created_date)
+    boolean existsByParentId(Long parentId);
+
+    // whether a post has any comment left, for when its comment_count says 0 (one probe on idx_comments_post_id_parent_id_likes)
     boolean existsByPostId(Long postId);
 
-    Page<Comment> findByAuthorId(Long userId, Pageable pageable);
+    // atomic likes = likes ± delta, so we never load the comment and never lose a concurrent like
+    @Modifying
+    @Query("UPDATE Comment c SET c.likes = c.likes + :delta, c.version = c.version + 1, c.lastModifiedDate = CURRENT_TIMESTAMP WHERE c.id = :commentId")
+    int updateLikes(@Param("commentId") Long commentId, @Param("delta") int delta);
+
+    // atomic reply_count = reply_count ± delta on the parent of a new or deleted reply
+    @Modifying
+    @Query("UPDATE Comment c SET c.replyCount = c.replyCount + :delta, c.version = c.version + 1, c.lastModifiedDate = CURRENT_TIMESTAMP WHERE c.id = :commentId")
+    int updateReplyCount(@Param("commentId") Long commentId, @Param("delta") int delta);
 }
@@ -1,24 +1,44 @@
 package com.yearis.blog_application.repository;
 
-import com.yearis.blog_application.entity.Comment;
 import com.yearis.blog_application.entity.Like;
-import com.yearis.blog_application.entity.Post;
-import com.yearis.blog_application.entity.User;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
-
-import java.util.Optional;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 
 public interface LikeRepository extends JpaRepository<Like, Long> {
 
-    Optional<Like> findByUserAndPost(User user, Post post);
-
-    Optional<Like> findByUserAndComment(User user, Comment comment);
-
     // Fetch only the rows where post_id is NOT null
+    // with the liked post and its author in the same query, we map every one of them to a response
+    @EntityGraph(attributePaths = {"post", "post.author"})
     Page<Like> findByUserIdAndPostIsNotNull(Long userId, Pageable pageable);
 
     // Fetch only the rows where comment_id is NOT null
+    @EntityGraph(attributePaths = {"comment", "comment.author"})
     Page<Like> findByUserIdAndCommentIsNotNull(Long userId, Pageable pageable);
+
+    /// For toggling likes without loading anything
+
+    // both return the number of rows they touched, 0 means there was nothing to unlike
+    @Modifying
+    @Query("DELETE FROM Like l WHERE l.user.id = :userId AND l.post.id = :postId")
+    int deleteByUserIdAndPostId(@Param("userId") Long userId, @Param("postId") Long postId);
+
+    @Modifying
+    @Query("DELETE FROM Like l WHERE l.user.id = :userId AND l.comment.id = :commentId")
+    int deleteByUserIdAndCommentId(@Param("userId") Long userId, @Param("commentId") Long commentId);
+
+    // INSERT IGNORE lets our unique constraints (user_post_like, user_comment_like) reject a duplicate like
+    // and also a like on a post/comment that doesn't exist (foreign key), in both cases 0 rows are inserted.
+    // The id comes from LikeIdGenerator, the same block of id_generators our Like entities use
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO likes (id, created_date, user_id, post_id) VALUES (:id, NOW(6), :userId, :postId)", nativeQuery = true)
+    int insertPostLike(@Param("id") Long id, @Param("userId") Long userId, @Param("postId") Long postId);
+
+    @Modifying
+    @Query(value = "INSERT IGNORE INTO likes (id, created_date, user_id, comment_id) VALUES (:id, NOW(6), :userId, :commentId)", nativeQuery = true)
+    int insertCommentLike(@Param("id") Long id, @Param("userId") Long userId, @Param("commentId") Long commentId);
 }
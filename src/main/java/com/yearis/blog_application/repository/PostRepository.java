@@ -1,16 +1,145 @@
 package com.yearis.blog_application.repository;
 
 import com.yearis.blog_application.entity.Post;
-import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.jpa.repository.EntityGraph;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.List;
+import java.util.Optional;
+
 @Repository
 public interface PostRepository extends JpaRepository<Post, Long> {
 
+    // NOTE: our page endpoints return a Slice instead of a Page, so Spring doesn't run a COUNT(*) on every request
+    // NOTE: Post.author is lazy, every query whose posts end up in a response fetches it in the same query
+
+    // a single post is always shown with its author
+    @Override
+    @EntityGraph(attributePaths = "author")
+    Optional<Post> findById(Long id);
+
     // for our findByTitle method
-    Page<Post> findByTitleContaining(String title, Pageable pageable);
+    @EntityGraph(attributePaths = "author")
+    Slice<Post> findByTitleContaining(String title, Pageable pageable);
+
+    @EntityGraph(attributePaths = "author")
+    Slice<Post> findByAuthorId(Long userId, Pageable pageable);
+
+    @EntityGraph(attributePaths = "author")
+    Slice<Post> findAllBy(Pageable pageable);
+
+    // required for the hot/top feeds while their in-memory ranking is still being built
+    @EntityGraph(attributePaths = "author")
+    Slice<Post> findByCreatedDateAfter(LocalDateTime createdDate, Pageable pageable);
+
+    /// For our cursor based feed
+
+    // we seek past the last post the client has seen on (created_date, id), which is our idx_posts_created_date_id index
+    // so the 1000th page costs the same as the 1st one (no OFFSET)
+    // the "createdDate <=" is implied by the OR, spelled out so every database sees a range on the index's first column
+    @Query("""
+            SELECT p FROM Post p LEFT JOIN FETCH p.author
+            ORDER BY p.createdDate DESC, p.id DESC
+            """)
+    List<Post> findFeed(Limit limit);
+
+    @Query("""
+            SELECT p FROM Post p LEFT JOIN FETCH p.author
+            WHERE p.createdDate <= :createdDate AND (p.createdDate < :createdDate OR p.id < :id)
+            ORDER BY p.createdDate DESC, p.id DESC
+            """)
+    List<Post> findFeedAfter(@Param("createdDate") LocalDateTime createdDate, @Param("id") Long id, Limit limit);
+
+    // same as above but only for one author, uses our idx_posts_user_id_created_date index
+    @Query("""
+            SELECT p FROM Post p LEFT JOIN FETCH p.author
+            WHERE p.author.id = :userId
+            ORDER BY p.createdDate DESC, p.id DESC
+            """)
+    List<Post> findFeedByAuthorId(@Param("userId") Long userId, Limit limit);
+
+    @Query("""
+            SELECT p FROM Post p LEFT JOIN FETCH p.author
+            WHERE p.author.id = :userId
+            AND p.createdDate <= :createdDate AND (p.createdDate < :createdDate OR p.id < :id)
+            ORDER BY p.createdDate DESC, p.id DESC
+            """)
+    List<Post> findFeedByAuthorIdAfter(@Param("userId") Long userId, @Param("createdDate") LocalDateTime createdDate, @Param("id") Long id, Limit limit);
+
+    // to load a known list of posts (e.g. search results) together with their authors in one query
+    @Query("SELECT p FROM Post p LEFT JOIN FETCH p.author WHERE p.id IN :ids")
+    List<Post> findAllWithAuthorByIdIn(@Param("ids") Collection<Long> ids);
+
+    // for conditional GETs: only what our ETag is made of, the content is never read
+    // the response also carries the author's name, a rename bumps the author's token version so that's part of it too
+    @Query("SELECT p.version AS version, a.tokenVersion AS authorVersion, p.lastModifiedDate AS lastModifiedDate " +
+            "FROM Post p LEFT JOIN p.author a WHERE p.id = :id")
+    Optional<VersionView> findVersionById(@Param("id") Long id);
+
+    interface VersionView {
+
+        long getVersion();
+
+        Integer getAuthorVersion();
+
+        LocalDateTime getLastModifiedDate();
+    }
+
+    /// For our summary views (lists)
+
+    // only the columns a list shows, with the author in the same query and the content cut down by MySQL
+    // so we never read the whole TEXT column, the password hash or the roles of the author
+    String SUMMARY_SELECT = """
+            SELECT p.id AS id, p.title AS title, SUBSTRING(p.content, 1, 200) AS excerpt,
+                   p.createdDate AS createdDate, p.isEdited AS edited, p.likes AS likes,
+                   a.id AS authorId, a.username AS authorName
+            FROM Post p LEFT JOIN p.author a
+            """;
+
+    @Query(SUMMARY_SELECT)
+    Slice<PostSummaryView> findAllSummaries(Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " WHERE p.title LIKE CONCAT('%', :title, '%')")
+    Slice<PostSummaryView> findSummariesByTitleContaining(@Param("title") String title, Pageable pageable);
+
+    @Query(SUMMARY_SELECT + " WHERE a.id = :userId")
+    Slice<PostSummaryView> findSummariesByAuthorId(@Param("userId") Long userId, Pageable pageable);
+
+    interface PostSummaryView {
+
+        Long getId();
+
+        String getTitle();
+
+        String getExcerpt();
+
+        LocalDateTime getCreatedDate();
+
+        boolean isEdited();
+
+        int getLikes();
+
+        Long getAuthorId();
+
+        String getAuthorName();
+    }
+
+    // atomic likes = likes ± delta, so we never load the post and never lose a concurrent like
+    @Modifying
+    @Query("UPDATE Post p SET p.likes = p.likes + :delta, p.version = p.version + 1, p.lastModifiedDate = CURRENT_TIMESTAMP WHERE p.id = :postId")
+    int updateLikes(@Param("postId") Long postId, @Param("delta") int delta);
 
-    Page<Post> findByAuthorId(Long userId, Pageable pageable);
+    // same for comment_count, a new or deleted comment never loads the post to count it
+    @Modifying
+    @Query("UPDATE Post p SET p.commentCount = p.commentCount + :delta, p.version = p.version + 1, p.lastModifiedDate = CURRENT_TIMESTAMP WHERE p.id = :postId")
+    int updateCommentCount(@Param("postId") Long postId, @Param("delta") int delta);
 }
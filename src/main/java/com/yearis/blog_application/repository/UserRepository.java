@@ -1,9 +1,15 @@
 package com.yearis.blog_application.repository;
 
 import com.yearis.blog_application.entity.User;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.jpa.repository.JpaRepository;
+import org.springframework.data.jpa.repository.Query;
+import org.springframework.data.repository.query.Param;
 import org.springframework.stereotype.Repository;
 
+import java.time.LocalDateTime;
+import java.util.Collection;
 import java.util.List;
 import java.util.Optional;
 
@@ -16,8 +22,8 @@ public interface UserRepository extends JpaRepository<User, Long> {
     // required for login to check if a user exists with this username
     Optional<User> findByUsername(String userName);
 
-    // required for finding a user with username 
-    List<User> findByUsernameContaining(String query);
+    // required for finding a user with username, one page at a time
+    Slice<User> findByUsernameContaining(String query, Pageable pageable);
 
     // required for "Login with Username or Email" feature
     Optional<User> findByUsernameOrEmail(String userName, String email);
@@ -28,4 +34,21 @@ public interface UserRepository extends JpaRepository<User, Long> {
     // required during registration to check if a username is already occupied by user as our username field is unique
     Boolean existsByUsername(String userName);
 
+    // required for bulk imports, to check every author exists with one query instead of one per post
+    @Query("SELECT u.id FROM User u WHERE u.id IN :ids")
+    List<Long> findExistingIds(@Param("ids") Collection<Long> ids);
+
+    // required for revoking tokens, only the versions bumped since we last looked (a range read on idx_users_token_version_changed_at)
+    @Query("SELECT u.id AS id, u.tokenVersion AS tokenVersion, u.tokenVersionChangedAt AS changedAt " +
+            "FROM User u WHERE u.tokenVersionChangedAt > :since")
+    List<TokenVersionView> findTokenVersionsChangedAfter(@Param("since") LocalDateTime since);
+
+    interface TokenVersionView {
+
+        Long getId();
+
+        int getTokenVersion();
+
+        LocalDateTime getChangedAt();
+    }
 }
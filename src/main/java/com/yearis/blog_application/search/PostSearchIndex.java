@@ -0,0 +1,500 @@
+package com.yearis.blog_application.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+import java.util.regex.Pattern;
+
+// an in-memory inverted index over the title and content of our posts
+// title LIKE '%term%' can't use an index and scans every post, this answers a search from memory instead
+//
+// every post gets an internal doc id (its position in our arrays), and every word points to a posting list:
+// the sorted doc ids that contain it plus how often. A search intersects the lists of all its words (AND)
+// and ranks what's left with BM25
+//
+// an update only marks the old doc deleted, once deleted docs are a quarter of all docs we compact:
+// the posting lists drop them and the live docs get new, dense doc ids (in the same order)
+@Component
+public class PostSearchIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(PostSearchIndex.class);
+
+    private static final Pattern TOKEN_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // a word in the title counts as much as this many words in the content
+    private static final int TITLE_WEIGHT = 3;
+
+    // the usual BM25 parameters
+    private static final double K1 = 1.2;
+    private static final double B = 0.75;
+
+    // we compact once this share of our docs is deleted (and at least MIN_COMPACT of them)
+    private static final double COMPACT_RATIO = 0.25;
+    private static final int MIN_COMPACT = 1000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int buildChunkSize;
+
+    // many searches can run together, an update needs the index for itself
+    private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+    private final Map<String, PostingList> postings = new HashMap<>();
+    private final Map<Long, Integer> docByPostId = new HashMap<>();
+
+    // indexed by doc id, until the next compaction a doc id is never reused
+    private long[] postIds = new long[1024];
+    private int[] docLengths = new int[1024];
+    private final BitSet deleted = new BitSet();
+
+    // the posting lists each doc is in, so deleting it can take it out of their document frequency
+    private PostingList[][] docLists = new PostingList[1024][];
+
+    private int docCount;
+    private int liveDocs;
+    private long totalLength;
+
+    private volatile boolean ready;
+
+    // posts created/updated/deleted while we build, the build must not overwrite them with what it read before
+    private final Set<Long> touchedDuringBuild = new HashSet<>();
+
+    public PostSearchIndex(JdbcTemplate jdbcTemplate,
+                           @Value("${spring.search.build-chunk-size:1000}") int buildChunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.buildChunkSize = buildChunkSize;
+    }
+
+    // until this is true (right after startup) our callers should fall back to the database
+    public boolean isReady() {
+
+        return ready;
+    }
+
+    /// --- Updates (applied after the transaction commits) ---
+
+    public void indexPost(Long postId, String title, String content) {
+
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                if (!ready) {
+                    touchedDuringBuild.add(postId);
+                }
+
+                removeDoc(postId);
+                addDoc(postId, title, content);
+                compactIfNeeded();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    public void removePost(Long postId) {
+
+        afterCommit(() -> {
+            lock.writeLock().lock();
+            try {
+                if (!ready) {
+                    touchedDuringBuild.add(postId);
+                }
+
+                removeDoc(postId);
+                compactIfNeeded();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        });
+    }
+
+    /// --- Search ---
+
+    // the ids of the posts that contain every word of our query, best match first
+    public List<Long> search(String query, int pageNo, int pageSize) {
+
+        List<String> terms = new ArrayList<>(new LinkedHashSet<>(tokenize(query)));
+
+        if (terms.isEmpty()) {
+            return List.of();
+        }
+
+        lock.readLock().lock();
+        try {
+            PostingList[] lists = new PostingList[terms.size()];
+
+            for (int i = 0; i < terms.size(); i++) {
+
+                lists[i] = postings.get(terms.get(i));
+
+                // AND query, one unknown word (or one only deleted posts had) means no results
+                if (lists[i] == null || lists[i].live == 0) {
+                    return List.of();
+                }
+            }
+
+            // we start from the rarest word, so the candidates shrink as fast as possible
+            Arrays.sort(lists, (a, b) -> Integer.compare(a.size, b.size));
+
+            int[] candidates = Arrays.copyOf(lists[0].docs, lists[0].size);
+            int candidateCount = lists[0].size;
+
+            for (int i = 1; i < lists.length && candidateCount > 0; i++) {
+                candidateCount = lists[i].retainAll(candidates, candidateCount);
+            }
+
+            // BM25 for every doc that is left
+            double averageLength = liveDocs == 0 ? 1 : (double) totalLength / liveDocs;
+
+            int matches = 0;
+            int[] matchedDocs = new int[candidateCount];
+            double[] scores = new double[candidateCount];
+
+            for (int c = 0; c < candidateCount; c++) {
+
+                int doc = candidates[c];
+
+                if (deleted.get(doc)) {
+                    continue;
+                }
+
+                double score = 0;
+                double lengthNorm = K1 * (1 - B + B * docLengths[doc] / averageLength);
+
+                for (PostingList list : lists) {
+
+                    // the document frequency counts only live docs, deleted ones wait in the list for the next compaction
+                    int tf = list.frequency(doc);
+                    double idf = Math.log(1 + (liveDocs - list.live + 0.5) / (list.live + 0.5));
+
+                    score += idf * (tf * (K1 + 1)) / (tf + lengthNorm);
+                }
+
+                matchedDocs[matches] = doc;
+                scores[matches] = score;
+                matches++;
+            }
+
+            // best score first, newer post (bigger doc id) first on a tie
+            Integer[] order = new Integer[matches];
+            for (int i = 0; i < matches; i++) {
+                order[i] = i;
+            }
+
+            Arrays.sort(order, (a, b) -> {
+                int byScore = Double.compare(scores[b], scores[a]);
+                return byScore != 0 ? byScore : Integer.compare(matchedDocs[b], matchedDocs[a]);
+            });
+
+            long from = (long) pageNo * pageSize;
+            List<Long> page = new ArrayList<>(pageSize);
+
+            for (long i = from; i < matches && page.size() < pageSize; i++) {
+                page.add(postIds[matchedDocs[order[(int) i]]]);
+            }
+
+            return page;
+        } finally {
+            lock.readLock().unlock();
+        }
+    }
+
+    /// --- Building the index on startup ---
+
+    // we build in the background so the app is available right away, searches use the database until we are done
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+
+        Thread builder = new Thread(this::build, "post-search-index-build");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    private void build() {
+
+        long start = System.currentTimeMillis();
+
+        try {
+            long lastId = 0;
+
+            while (true) {
+
+                // we stream our posts by primary key, one chunk at a time, so we never hold them all in memory
+                List<PostRow> rows = jdbcTemplate.query(
+                        "SELECT id, title, content FROM posts WHERE id > ? ORDER BY id LIMIT ?",
+                        (rs, rowNum) -> new PostRow(rs.getLong(1), rs.getString(2), rs.getString(3)),
+                        lastId, buildChunkSize);
+
+                if (rows.isEmpty()) {
+                    break;
+                }
+
+                lock.writeLock().lock();
+                try {
+                    for (PostRow row : rows) {
+
+                        if (!touchedDuringBuild.contains(row.id())) {
+                            addDoc(row.id(), row.title(), row.content());
+                        }
+                    }
+                } finally {
+                    lock.writeLock().unlock();
+                }
+
+                lastId = rows.get(rows.size() - 1).id();
+
+                if (rows.size() < buildChunkSize) {
+                    break;
+                }
+            }
+
+            lock.writeLock().lock();
+            try {
+                ready = true;
+                touchedDuringBuild.clear();
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            log.info("Post search index built: {} posts, {} words in {} ms", liveDocs, postings.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            // we stay not ready, so search keeps using the database
+            log.error("Could not build the post search index, search falls back to the database", e);
+        }
+    }
+
+    /// --- Internals (callers hold the write lock) ---
+
+    private void addDoc(Long postId, String title, String content) {
+
+        Map<String, Integer> frequencies = new HashMap<>();
+        int length = addTokens(frequencies, title, TITLE_WEIGHT) + addTokens(frequencies, content, 1);
+
+        int doc = docCount++;
+
+        if (doc == postIds.length) {
+            postIds = Arrays.copyOf(postIds, doc * 2);
+            docLengths = Arrays.copyOf(docLengths, doc * 2);
+            docLists = Arrays.copyOf(docLists, doc * 2);
+        }
+
+        postIds[doc] = postId;
+        docLengths[doc] = length;
+        docByPostId.put(postId, doc);
+
+        liveDocs++;
+        totalLength += length;
+
+        PostingList[] lists = new PostingList[frequencies.size()];
+        int i = 0;
+
+        // doc ids only grow, so every posting list stays sorted by simply appending
+        for (Map.Entry<String, Integer> entry : frequencies.entrySet()) {
+            PostingList list = postings.computeIfAbsent(entry.getKey(), key -> new PostingList());
+            list.append(doc, entry.getValue());
+            lists[i++] = list;
+        }
+
+        docLists[doc] = lists;
+    }
+
+    private void removeDoc(Long postId) {
+
+        Integer doc = docByPostId.remove(postId);
+
+        if (doc == null) {
+            return;
+        }
+
+        // we only mark it, the posting lists are cleaned up later in one go
+        deleted.set(doc);
+        liveDocs--;
+        totalLength -= docLengths[doc];
+
+        for (PostingList list : docLists[doc]) {
+            list.live--;
+        }
+
+        docLists[doc] = null;
+    }
+
+    private void compactIfNeeded() {
+
+        int deletedDocs = docCount - liveDocs;
+
+        if (deletedDocs < Math.max(MIN_COMPACT, docCount * COMPACT_RATIO)) {
+            return;
+        }
+
+        // the live docs keep their order, so the posting lists stay sorted and a tie still goes to the newer post
+        int[] newDocs = new int[docCount];
+        int capacity = Math.max(1024, Integer.highestOneBit(Math.max(liveDocs, 1)) * 2);
+
+        long[] newPostIds = new long[capacity];
+        int[] newDocLengths = new int[capacity];
+        PostingList[][] newDocLists = new PostingList[capacity][];
+
+        int next = 0;
+
+        for (int doc = 0; doc < docCount; doc++) {
+
+            if (deleted.get(doc)) {
+                newDocs[doc] = -1;
+                continue;
+            }
+
+            newDocs[doc] = next;
+            newPostIds[next] = postIds[doc];
+            newDocLengths[next] = docLengths[doc];
+            newDocLists[next] = docLists[doc];
+            docByPostId.put(postIds[doc], next);
+            next++;
+        }
+
+        postings.values().removeIf(list -> list.compact(newDocs) == 0);
+
+        postIds = newPostIds;
+        docLengths = newDocLengths;
+        docLists = newDocLists;
+        docCount = next;
+        deleted.clear();
+    }
+
+    private static int addTokens(Map<String, Integer> frequencies, String text, int weight) {
+
+        List<String> tokens = tokenize(text);
+        tokens.forEach(token -> frequencies.merge(token, weight, Integer::sum));
+
+        return tokens.size() * weight;
+    }
+
+    // lower-cased words and numbers, single characters are skipped as they match almost everything
+    private static List<String> tokenize(String text) {
+
+        if (text == null || text.isBlank()) {
+            return List.of();
+        }
+
+        List<String> tokens = new ArrayList<>();
+
+        for (String token : TOKEN_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (token.length() > 1) {
+                tokens.add(token);
+            }
+        }
+
+        return tokens;
+    }
+
+    private void afterCommit(Runnable action) {
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private record PostRow(long id, String title, String content) {
+    }
+
+    // sorted doc ids and their term frequencies, as two plain int arrays
+    private static class PostingList {
+
+        private int[] docs = new int[4];
+        private int[] frequencies = new int[4];
+        private int size;
+
+        // how many of them aren't deleted, our document frequency
+        private int live;
+
+        void append(int doc, int frequency) {
+
+            if (size == docs.length) {
+                docs = Arrays.copyOf(docs, size * 2);
+                frequencies = Arrays.copyOf(frequencies, size * 2);
+            }
+
+            docs[size] = doc;
+            frequencies[size] = frequency;
+            size++;
+            live++;
+        }
+
+        int frequency(int doc) {
+
+            int index = Arrays.binarySearch(docs, 0, size, doc);
+
+            return index >= 0 ? frequencies[index] : 0;
+        }
+
+        // keeps only the candidates that are also in this list, returns how many are left
+        int retainAll(int[] candidates, int count) {
+
+            int kept = 0;
+            int position = 0;
+
+            for (int c = 0; c < count && position < size; c++) {
+
+                int index = Arrays.binarySearch(docs, position, size, candidates[c]);
+
+                if (index >= 0) {
+                    candidates[kept++] = candidates[c];
+                    position = index + 1;
+                } else {
+                    position = -index - 1;
+                }
+            }
+
+            return kept;
+        }
+
+        // drops the deleted docs (-1 in newDocs) and renumbers the others, returns how many are left
+        int compact(int[] newDocs) {
+
+            int kept = 0;
+
+            for (int i = 0; i < size; i++) {
+                if (newDocs[docs[i]] >= 0) {
+                    docs[kept] = newDocs[docs[i]];
+                    frequencies[kept] = frequencies[i];
+                    kept++;
+                }
+            }
+
+            // a list that shrank a lot gives its memory back
+            if (kept < docs.length / 4) {
+                docs = Arrays.copyOf(docs, Math.max(4, kept));
+                frequencies = Arrays.copyOf(frequencies, Math.max(4, kept));
+            }
+
+            size = kept;
+
+            return kept;
+        }
+    }
+}
@@ -0,0 +1,478 @@
+package com.yearis.blog_application.search;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Consumer;
+import java.util.regex.Pattern;
+
+// the typeahead behind our search boxes: completions for what the user typed so far, with zero SQL per keystroke
+//
+// every title/username is kept in a sorted map under its lower-cased text, so a prefix is just a range of keys.
+// Titles are also kept under every word they contain, so "boot" completes "Intro to Spring Boot"
+// post completions are ranked by likes, user completions by recency (newest first)
+@Component
+public class SuggestIndex {
+
+    private static final Logger log = LoggerFactory.getLogger(SuggestIndex.class);
+
+    private static final Pattern WORD_SEPARATOR = Pattern.compile("[^\\p{L}\\p{N}]+");
+
+    // how many words of a title we index, beyond that nobody types
+    private static final int MAX_TITLE_WORDS = 8;
+
+    // a short prefix like "a" or "th" matches a big part of the index, for these we keep their best entries ready
+    // instead of ranking the whole range on every keystroke. Longer prefixes match few enough keys to rank all of them
+    private static final int SHORT_PREFIX = 3;
+
+    // how many of its best entries a short prefix keeps, a lookup asking for more ranks the whole range
+    private static final int TOP_PER_PREFIX = 50;
+
+    // our completion order: highest rank first, then the newest id
+    private static final Comparator<Ranked> BEST_FIRST = Comparator.comparingLong(Ranked::rank).reversed()
+            .thenComparing(ranked -> ranked.entry().id, Comparator.reverseOrder());
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int buildChunkSize;
+
+    private final PrefixIndex posts = new PrefixIndex();
+    private final PrefixIndex users = new PrefixIndex();
+
+    private volatile boolean ready;
+
+    public SuggestIndex(JdbcTemplate jdbcTemplate,
+                        @Value("${spring.search.build-chunk-size:1000}") int buildChunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.buildChunkSize = buildChunkSize;
+    }
+
+    public record Suggestion(Long id, String text) {
+    }
+
+    /// --- Lookups ---
+
+    // while we are still building on startup this only knows part of our posts/users, which is fine for a typeahead
+    public List<Suggestion> suggestPosts(String prefix, int limit) {
+
+        return posts.suggest(prefix, limit);
+    }
+
+    public List<Suggestion> suggestUsers(String prefix, int limit) {
+
+        return users.suggest(prefix, limit);
+    }
+
+    /// --- Updates (applied after the transaction commits) ---
+
+    public void indexPost(Long postId, String title, long likes) {
+
+        afterCommit(() -> posts.put(postId, title, likes, true));
+    }
+
+    public void removePost(Long postId) {
+
+        afterCommit(() -> posts.remove(postId));
+    }
+
+    // a like toggle moves the post up or down in the completions
+    public void addPostLikes(Long postId, int delta) {
+
+        afterCommit(() -> posts.addRank(postId, delta));
+    }
+
+    // new users and renames, a user is ranked by its id so newer users come first
+    public void indexUser(Long userId, String username) {
+
+        afterCommit(() -> users.put(userId, username, userId, false));
+    }
+
+    /// --- Building the index on startup ---
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+
+        Thread builder = new Thread(this::build, "suggest-index-build");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    private void build() {
+
+        long start = System.currentTimeMillis();
+
+        try {
+            buildFrom("SELECT id, title, likes FROM posts WHERE id > ? ORDER BY id LIMIT ?", posts, true);
+            buildFrom("SELECT id, username, id FROM users WHERE id > ? ORDER BY id LIMIT ?", users, false);
+
+            ready = true;
+            posts.touchedDuringBuild.clear();
+            users.touchedDuringBuild.clear();
+
+            log.info("Suggest index built: {} posts, {} users in {} ms", posts.byId.size(), users.byId.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.error("Could not build the suggest index, suggestions only cover what changed since startup", e);
+        }
+    }
+
+    private void buildFrom(String sql, PrefixIndex index, boolean everyWord) {
+
+        long lastId = 0;
+
+        while (true) {
+
+            List<Object[]> rows = jdbcTemplate.query(sql,
+                    (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getString(2), rs.getLong(3)},
+                    lastId, buildChunkSize);
+
+            for (Object[] row : rows) {
+                index.putIfUntouched((Long) row[0], (String) row[1], (Long) row[2], everyWord);
+            }
+
+            if (rows.size() < buildChunkSize) {
+                break;
+            }
+
+            lastId = (Long) rows.get(rows.size() - 1)[0];
+        }
+    }
+
+    private void afterCommit(Runnable action) {
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // lower-cased words joined by a single space, so "Spring-Boot  Tips" and "spring boot tips" are the same key
+    private static List<String> words(String text) {
+
+        List<String> words = new ArrayList<>();
+
+        if (text == null) {
+            return words;
+        }
+
+        for (String word : WORD_SEPARATOR.split(text.toLowerCase(Locale.ROOT))) {
+            if (!word.isEmpty()) {
+                words.add(word);
+            }
+        }
+
+        return words;
+    }
+
+    private class PrefixIndex {
+
+        // the key is "<normalized text>\0<id>", so two posts with the same title get their own keys
+        private final ConcurrentSkipListMap<String, Entry> byKey = new ConcurrentSkipListMap<>();
+        private final Map<Long, Entry> byId = new ConcurrentHashMap<>();
+
+        // ids written while we build, the build must not overwrite them with what it read before
+        private final Set<Long> touchedDuringBuild = ConcurrentHashMap.newKeySet();
+
+        // the best entries of every short prefix somebody asked for, our writes keep them up to date.
+        // Only prefixes that match something get in (and leave with their last entry), so this is bounded by what we index,
+        // not by what people type
+        private final Map<String, TopEntries> topByPrefix = new ConcurrentHashMap<>();
+
+        // writes are rare compared to lookups, so one lock per index is enough, lookups never take it
+        synchronized void put(Long id, String text, long rank, boolean everyWord) {
+
+            if (!ready) {
+                touchedDuringBuild.add(id);
+            }
+
+            removeKeys(byId.remove(id));
+
+            List<String> words = words(text);
+
+            if (words.isEmpty()) {
+                return;
+            }
+
+            Entry entry = new Entry(id, text, rank, new ArrayList<>());
+
+            // the whole text, and for titles every later word start as well
+            int starts = everyWord ? Math.min(words.size(), MAX_TITLE_WORDS) : 1;
+
+            for (int i = 0; i < starts; i++) {
+
+                String key = String.join(" ", words.subList(i, words.size())) + '\0' + id;
+
+                entry.keys.add(key);
+                byKey.put(key, entry);
+            }
+
+            byId.put(id, entry);
+
+            forEachTop(entry, top -> top.offer(entry));
+        }
+
+        synchronized void putIfUntouched(Long id, String text, long rank, boolean everyWord) {
+
+            if (!touchedDuringBuild.contains(id) && !byId.containsKey(id)) {
+                put(id, text, rank, everyWord);
+                touchedDuringBuild.remove(id);
+            }
+        }
+
+        synchronized void remove(Long id) {
+
+            if (!ready) {
+                touchedDuringBuild.add(id);
+            }
+
+            removeKeys(byId.remove(id));
+        }
+
+        void addRank(Long id, int delta) {
+
+            Entry entry = byId.get(id);
+
+            if (entry != null) {
+                entry.rank.addAndGet(delta);
+                forEachTop(entry, top -> top.rankChanged(entry));
+            }
+        }
+
+        List<Suggestion> suggest(String prefix, int limit) {
+
+            String normalized = String.join(" ", words(prefix));
+
+            if (normalized.isEmpty() || limit < 1) {
+                return List.of();
+            }
+
+            // keep the trailing space, "spring " should not complete "springfield"
+            if (!prefix.isEmpty() && Character.isWhitespace(prefix.charAt(prefix.length() - 1))) {
+                normalized += " ";
+            }
+
+            List<Ranked> best;
+
+            if (normalized.length() <= SHORT_PREFIX && limit <= TOP_PER_PREFIX) {
+
+                TopEntries top = topByPrefix.get(normalized);
+
+                if (top == null) {
+
+                    if (!hasMatch(normalized)) {
+                        return List.of();
+                    }
+
+                    top = topByPrefix.computeIfAbsent(normalized, TopEntries::new);
+                }
+
+                best = top.best(limit);
+            } else {
+                best = ranked(matches(normalized));
+            }
+
+            return best.stream()
+                    .limit(limit)
+                    .map(ranked -> new Suggestion(ranked.entry().id, ranked.entry().text))
+                    .toList();
+        }
+
+        // every entry with a key that starts with the prefix, once (a title can match at several words)
+        private Collection<Entry> matches(String prefix) {
+
+            Map<Long, Entry> matches = new HashMap<>();
+
+            for (Entry entry : byKey.subMap(prefix, true, prefix + Character.MAX_VALUE, false).values()) {
+                matches.putIfAbsent(entry.id, entry);
+            }
+
+            return matches.values();
+        }
+
+        private boolean hasMatch(String prefix) {
+
+            String first = byKey.ceilingKey(prefix);
+
+            return first != null && first.startsWith(prefix);
+        }
+
+        private void removeKeys(Entry entry) {
+
+            if (entry != null) {
+                entry.keys.forEach(key -> byKey.remove(key, entry));
+                forEachTop(entry, top -> top.remove(entry));
+            }
+        }
+
+        // the kept short prefixes the entry is under
+        private void forEachTop(Entry entry, Consumer<TopEntries> action) {
+
+            Set<String> prefixes = new HashSet<>();
+
+            for (String key : entry.keys) {
+
+                int textLength = key.indexOf('\0');
+
+                for (int length = 1; length <= Math.min(SHORT_PREFIX, textLength); length++) {
+                    prefixes.add(key.substring(0, length));
+                }
+            }
+
+            for (String prefix : prefixes) {
+
+                TopEntries top = topByPrefix.get(prefix);
+
+                if (top != null) {
+                    action.accept(top);
+                }
+            }
+        }
+
+        // the best entries under one short prefix, and the best place anything else under it can have at most (its floor)
+        // an entry placed before the floor beats everything we don't hold, so those can be served as they are.
+        // When a lookup needs more than that (e.g. unlikes pushed our best below the floor) we rank the whole range again
+        private class TopEntries {
+
+            private final String prefix;
+            private final Map<Long, Entry> members = new HashMap<>();
+
+            // null when we hold every entry under the prefix
+            private Ranked floor;
+            private boolean built;
+
+            TopEntries(String prefix) {
+                this.prefix = prefix;
+            }
+
+            synchronized List<Ranked> best(int limit) {
+
+                if (!built) {
+                    rebuild();
+                }
+
+                List<Ranked> best = ranked(members.values());
+
+                if (!covers(best, limit)) {
+                    rebuild();
+                    best = ranked(members.values());
+                }
+
+                return best;
+            }
+
+            synchronized void offer(Entry entry) {
+
+                if (built) {
+                    members.put(entry.id, entry);
+                    trim();
+                }
+            }
+
+            synchronized void remove(Entry entry) {
+
+                members.remove(entry.id, entry);
+
+                // that was the last entry under our prefix, we go until somebody finds something under it again
+                if (built && floor == null && members.isEmpty()) {
+                    topByPrefix.remove(prefix, this);
+                }
+            }
+
+            // a member just moves in our order, an entry from outside comes in once it would be placed before the floor
+            synchronized void rankChanged(Entry entry) {
+
+                if (built && !members.containsKey(entry.id)
+                        && (floor == null || BEST_FIRST.compare(new Ranked(entry, entry.rank.get()), floor) < 0)) {
+                    members.put(entry.id, entry);
+                    trim();
+                }
+            }
+
+            private boolean covers(List<Ranked> best, int limit) {
+
+                return floor == null || (best.size() >= limit && BEST_FIRST.compare(best.get(limit - 1), floor) < 0);
+            }
+
+            private void rebuild() {
+
+                List<Ranked> all = ranked(matches(prefix));
+
+                members.clear();
+                all.stream().limit(TOP_PER_PREFIX).forEach(ranked -> members.put(ranked.entry().id, ranked.entry()));
+
+                floor = all.size() > TOP_PER_PREFIX ? all.get(TOP_PER_PREFIX) : null;
+                built = true;
+            }
+
+            // we drop our worst entries, the best of them is the new floor unless the old one was placed before it
+            private void trim() {
+
+                if (members.size() <= TOP_PER_PREFIX) {
+                    return;
+                }
+
+                List<Ranked> best = ranked(members.values());
+                Ranked firstDropped = best.get(TOP_PER_PREFIX);
+
+                best.subList(TOP_PER_PREFIX, best.size()).forEach(dropped -> members.remove(dropped.entry().id));
+
+                if (floor == null || BEST_FIRST.compare(firstDropped, floor) < 0) {
+                    floor = firstDropped;
+                }
+            }
+        }
+    }
+
+    // best first, we take every rank once here so a like landing while we sort can't change the order under us
+    private static List<Ranked> ranked(Collection<Entry> entries) {
+
+        return entries.stream()
+                .map(entry -> new Ranked(entry, entry.rank.get()))
+                .sorted(BEST_FIRST)
+                .toList();
+    }
+
+    private record Ranked(Entry entry, long rank) {
+    }
+
+    private static class Entry {
+
+        private final Long id;
+        private final String text;
+        private final List<String> keys;
+
+        // likes for posts, the id for users
+        private final AtomicLong rank;
+
+        Entry(Long id, String text, long rank, List<String> keys) {
+            this.id = id;
+            this.text = text;
+            this.rank = new AtomicLong(rank);
+            this.keys = keys;
+        }
+    }
+}
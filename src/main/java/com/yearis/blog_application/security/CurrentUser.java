@@ -0,0 +1,88 @@
+package com.yearis.blog_application.security;
+
+import com.yearis.blog_application.entity.User;
+import com.yearis.blog_application.repository.UserRepository;
+import org.springframework.security.core.Authentication;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.stereotype.Component;
+import org.springframework.web.context.annotation.RequestScope;
+
+import java.util.Objects;
+
+// the user who made the current request
+// we resolve it at most once per request, and reuse whatever our JwtAuthenticationFilter already put in the security context
+@Component
+@RequestScope
+public class CurrentUser {
+
+    private final UserRepository userRepository;
+
+    private Long id;
+    private User user;
+
+    public CurrentUser(UserRepository userRepository) {
+        this.userRepository = userRepository;
+    }
+
+    // the id of our user, most of the time this comes straight from the token without any query
+    public Long getId() {
+
+        if (id == null) {
+
+            if (authentication().getPrincipal() instanceof UserPrincipal principal) {
+                id = principal.getId();
+            } else {
+                id = get().getId();
+            }
+        }
+
+        return id;
+    }
+
+    // the full user entity, loaded only the first time someone asks for it in this request
+    public User get() {
+
+        if (user == null) {
+
+            if (id != null || authentication().getPrincipal() instanceof UserPrincipal) {
+                // we know the id so we use the primary key instead of the username/email lookup
+                Long userId = getId();
+                user = userRepository.findById(userId)
+                        .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+            } else {
+                String usernameOrEmail = authentication().getName();
+                user = userRepository.findByUsernameOrEmail(usernameOrEmail, usernameOrEmail)
+                        .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+            }
+
+            id = user.getId();
+        }
+
+        return user;
+    }
+
+    // when we only need our user as a foreign key (e.g. for a like) we don't load it at all
+    public User getReference() {
+
+        return user != null ? user : userRepository.getReferenceById(getId());
+    }
+
+    // the roles are already in our authentication, so we don't need the user for this
+    public boolean isAdmin() {
+
+        return authentication().getAuthorities().stream()
+                .anyMatch(authority -> "ROLE_ADMIN".equals(authority.getAuthority()));
+    }
+
+    // we compare ids, so this works for proxies and for users loaded in another transaction
+    public boolean is(User other) {
+
+        return other != null && getId().equals(other.getId());
+    }
+
+    private Authentication authentication() {
+
+        return Objects.requireNonNull(SecurityContextHolder.getContext().getAuthentication());
+    }
+}
@@ -32,10 +32,12 @@ public class CustomUserDetailsService implements UserDetailsService {
                 .map(role -> new SimpleGrantedAuthority(role.getName()))
                 .collect(Collectors.toSet());
 
-        // we return springs userdetails
-        return new org.springframework.security.core.userdetails.User(
+        // we return springs userdetails along with our id and token version
+        return new UserPrincipal(
+                user.getId(),
                 user.getUsername(),
                 user.getPassword(),
+                user.getTokenVersion(),
                 authorities
         );
     }
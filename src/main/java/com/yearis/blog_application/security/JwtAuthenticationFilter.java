@@ -1,5 +1,6 @@
 package com.yearis.blog_application.security;
 
+import io.jsonwebtoken.Claims;
 import jakarta.servlet.FilterChain;
 import jakarta.servlet.ServletException;
 import jakarta.servlet.http.HttpServletRequest;
@@ -7,6 +8,8 @@ import jakarta.servlet.http.HttpServletResponse;
 import org.jspecify.annotations.NonNull;
 import org.springframework.context.annotation.Lazy;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.authority.SimpleGrantedAuthority;
 import org.springframework.security.core.context.SecurityContextHolder;
 import org.springframework.security.core.userdetails.UserDetails;
 import org.springframework.security.core.userdetails.UserDetailsService;
@@ -15,6 +18,9 @@ import org.springframework.stereotype.Component;
 import org.springframework.web.filter.OncePerRequestFilter;
 
 import java.io.IOException;
+import java.util.List;
+import java.util.Set;
+import java.util.stream.Collectors;
 
 @Component
 public class JwtAuthenticationFilter extends OncePerRequestFilter {
@@ -23,9 +29,15 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
     private final UserDetailsService userDetailsService;
 
-    public JwtAuthenticationFilter(JwtService jwtService, @Lazy UserDetailsService userDetailsService) {
+    private final UserDetailsCache userDetailsCache;
+
+    private final TokenVersionRegistry tokenVersionRegistry;
+
+    public JwtAuthenticationFilter(JwtService jwtService, @Lazy UserDetailsService userDetailsService, UserDetailsCache userDetailsCache, TokenVersionRegistry tokenVersionRegistry) {
         this.jwtService = jwtService;
         this.userDetailsService = userDetailsService;
+        this.userDetailsCache = userDetailsCache;
+        this.tokenVersionRegistry = tokenVersionRegistry;
     }
 
     @Override
@@ -37,6 +49,7 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
 
         final String authHeader = request.getHeader("Authorization");
         final String jwt;
+        final Claims claims;
         final String userEmail;
 
         if (authHeader == null || !authHeader.startsWith("Bearer ")) {
@@ -45,24 +58,65 @@ public class JwtAuthenticationFilter extends OncePerRequestFilter {
         }
 
         jwt = authHeader.substring(7); // due to "Bearer " is 6 characters if we start from 0 and include the space
-        userEmail = jwtService.extractUserName(jwt);
+
+        // we parse and verify the token only once and work with its claims from here on
+        claims = jwtService.validateToken(jwt);
+        userEmail = claims.getSubject();
 
         if (userEmail != null && SecurityContextHolder.getContext().getAuthentication() == null) {
-            UserDetails userDetails = this.userDetailsService.loadUserByUsername(userEmail);
 
-            if (jwtService.isTokenValid(jwt, userDetails)) {
-                UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
-                        userDetails,
-                        null,
-                        userDetails.getAuthorities()
-                );
+            // our token carries the id, roles and token version, so we can trust it without a DB query
+            UserPrincipal principal = principalFromClaims(claims);
+
+            if (principal != null) {
+
+                // a bumped token version means the user revoked this token (e.g. changed the password)
+                if (tokenVersionRegistry.isCurrent(principal.getId(), principal.getTokenVersion())) {
+                    authenticate(request, principal);
+                }
+            } else {
 
-                authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+                // tokens issued before we added those claims still need the user from the database
+                UserDetails userDetails = userDetailsCache.get(userEmail, this.userDetailsService::loadUserByUsername);
 
-                SecurityContextHolder.getContext().setAuthentication(authToken);
+                // the signature and expiration are already checked, we only need the subject to match
+                if (userEmail.equals(userDetails.getUsername())) {
+                    authenticate(request, userDetails);
+                }
             }
         }
 
         filterChain.doFilter(request, response);
     }
+
+    private UserPrincipal principalFromClaims(Claims claims) {
+
+        Long userId = claims.get(JwtService.USER_ID_CLAIM, Long.class);
+        Integer tokenVersion = claims.get(JwtService.TOKEN_VERSION_CLAIM, Integer.class);
+        List<?> roles = claims.get(JwtService.ROLES_CLAIM, List.class);
+
+        if (userId == null || tokenVersion == null || roles == null) {
+            return null;
+        }
+
+        Set<GrantedAuthority> authorities = roles.stream()
+                .map(role -> new SimpleGrantedAuthority(role.toString()))
+                .collect(Collectors.toSet());
+
+        // we never have the password here and we don't need it
+        return new UserPrincipal(userId, claims.getSubject(), "", tokenVersion, authorities);
+    }
+
+    private void authenticate(HttpServletRequest request, UserDetails userDetails) {
+
+        UsernamePasswordAuthenticationToken authToken = new UsernamePasswordAuthenticationToken(
+                userDetails,
+                null,
+                userDetails.getAuthorities()
+        );
+
+        authToken.setDetails(new WebAuthenticationDetailsSource().buildDetails(request));
+
+        SecurityContextHolder.getContext().setAuthentication(authToken);
+    }
 }
@@ -0,0 +1,90 @@
+package com.yearis.blog_application.security;
+
+import io.jsonwebtoken.Claims;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.HexFormat;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// a small bounded cache of tokens we already verified, so a client reusing its token
+// doesn't make us parse and HMAC-verify it again on every request
+class JwtClaimsCache {
+
+    private final int maxSize;
+
+    // we key by the SHA-256 of the token so we never keep the raw bearer tokens in memory
+    private final Map<String, CachedClaims> cache = new ConcurrentHashMap<>();
+
+    JwtClaimsCache(int maxSize) {
+        this.maxSize = maxSize;
+    }
+
+    Claims get(String token) {
+
+        String key = hash(token);
+        CachedClaims cached = cache.get(key);
+
+        if (cached == null) {
+            return null;
+        }
+
+        // an expired token must go through the parser again so it is rejected there
+        if (cached.expiresAt() <= System.currentTimeMillis()) {
+            cache.remove(key, cached);
+            return null;
+        }
+
+        return cached.claims();
+    }
+
+    void put(String token, Claims claims) {
+
+        // a token without expiration is never cached, it would never be evicted
+        if (maxSize <= 0 || claims.getExpiration() == null) {
+            return;
+        }
+
+        if (cache.size() >= maxSize) {
+            evict();
+        }
+
+        cache.put(hash(token), new CachedClaims(claims, claims.getExpiration().getTime()));
+    }
+
+    // first we drop every expired entry, if we are still full we drop the ones closest to expiring
+    private void evict() {
+
+        long now = System.currentTimeMillis();
+        cache.values().removeIf(cached -> cached.expiresAt() <= now);
+
+        if (cache.size() < maxSize) {
+            return;
+        }
+
+        long cutoff = cache.values().stream()
+                .mapToLong(CachedClaims::expiresAt)
+                .sorted()
+                .skip(maxSize / 10)
+                .findFirst()
+                .orElse(Long.MAX_VALUE);
+
+        cache.values().removeIf(cached -> cached.expiresAt() <= cutoff);
+    }
+
+    private static String hash(String token) {
+
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-256");
+            return HexFormat.of().formatHex(digest.digest(token.getBytes(StandardCharsets.UTF_8)));
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM ships SHA-256, so this can't really happen
+            throw new IllegalStateException("SHA-256 not available", e);
+        }
+    }
+
+    private record CachedClaims(Claims claims, long expiresAt) {
+    }
+}
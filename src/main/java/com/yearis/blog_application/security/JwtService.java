@@ -1,14 +1,24 @@
 package com.yearis.blog_application.security;
 
+import io.jsonwebtoken.Claims;
 import org.springframework.security.core.userdetails.UserDetails;
 
 import java.util.Map;
 
 public interface JwtService {
 
+    // the extra claims we put in our token so that a request can be authorized without a DB query
+    String USER_ID_CLAIM = "uid";
+    String ROLES_CLAIM = "roles";
+    String TOKEN_VERSION_CLAIM = "ver";
+
     // we extract our token
     String extractUserName(String token);
 
+    // we parse and verify our token once and get back all of its claims
+    // throws a JwtException if the token is malformed, tampered or expired
+    Claims validateToken(String token);
+
     // we validate our token against our user details
     boolean isTokenValid(String token, UserDetails userDetails);
 
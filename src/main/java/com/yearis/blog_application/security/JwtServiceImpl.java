@@ -1,6 +1,7 @@
 package com.yearis.blog_application.security;
 
 import io.jsonwebtoken.Claims;
+import io.jsonwebtoken.JwtParser;
 import io.jsonwebtoken.Jwts;
 import io.jsonwebtoken.io.Decoders;
 import io.jsonwebtoken.security.Keys;
@@ -11,54 +12,61 @@ import org.springframework.stereotype.Service;
 import javax.crypto.SecretKey;
 import java.util.Date;
 import java.util.Map;
-import java.util.function.Function;
 
 @Service
 public class JwtServiceImpl implements JwtService {
 
-    @Value("${spring.jwt.secret}")
-    private String SECRET_KEY;
+    private final long JWT_EXPIRATION;
 
-    @Value("${spring.jwt.expiration}")
-    private long JWT_EXPIRATION;
+    // the key and the parser never change, so we build them once instead of on every call
+    private final SecretKey signingKey;
+    private final JwtParser jwtParser;
+
+    private final JwtClaimsCache claimsCache;
+
+    public JwtServiceImpl(@Value("${spring.jwt.secret}") String secretKey,
+                          @Value("${spring.jwt.expiration}") long jwtExpiration,
+                          @Value("${spring.jwt.claims-cache.max-size:10000}") int claimsCacheMaxSize) {
+
+        this.JWT_EXPIRATION = jwtExpiration;
+        this.signingKey = Keys.hmacShaKeyFor(Decoders.BASE64.decode(secretKey));
+        this.jwtParser = Jwts.parser()
+                .verifyWith(signingKey)
+                .build();
+        this.claimsCache = new JwtClaimsCache(claimsCacheMaxSize);
+    }
 
     @Override
     public String extractUserName(String token) {
 
-        return extractClaim(token, Claims::getSubject);
+        return validateToken(token).getSubject();
     }
 
-    private <T> T extractClaim(String token, Function<Claims, T> claimsResolver) {
-
-        final Claims claims = extractAllClaims(token);
+    @Override
+    public Claims validateToken(String token) {
 
-        return claimsResolver.apply(claims);
-    }
+        // if we already verified this token we skip the crypto work
+        Claims claims = claimsCache.get(token);
 
-    private Claims extractAllClaims(String token) {
+        if (claims == null) {
+            // the parser checks the signature and the expiration for us
+            claims = jwtParser.parseSignedClaims(token).getPayload();
+            claimsCache.put(token, claims);
+        }
 
-        return Jwts.parser()
-                .verifyWith(getSigningKey())
-                .build()
-                .parseSignedClaims(token)
-                .getPayload();
+        return claims;
     }
 
     @Override
     public boolean isTokenValid(String token, UserDetails userDetails) {
 
-        final String userName = extractUserName(token);
-        return (userName.equals(userDetails.getUsername()) && !isTokenExpired(token));
+        final Claims claims = validateToken(token);
+        return (claims.getSubject().equals(userDetails.getUsername()) && !isTokenExpired(claims));
     }
 
-    private boolean isTokenExpired(String token) {
+    private boolean isTokenExpired(Claims claims) {
 
-        return extractExpiration(token).before(new Date());
-    }
-
-    private Date extractExpiration(String token) {
-
-        return extractClaim(token, Claims::getExpiration);
+        return claims.getExpiration().before(new Date());
     }
 
     @Override
@@ -69,14 +77,7 @@ public class JwtServiceImpl implements JwtService {
                 .subject(userDetails.getUsername())
                 .issuedAt(new Date(System.currentTimeMillis()))
                 .expiration(new Date(System.currentTimeMillis() + JWT_EXPIRATION))
-                .signWith(getSigningKey(), Jwts.SIG.HS256)
+                .signWith(signingKey, Jwts.SIG.HS256)
                 .compact();
     }
-
-    private SecretKey getSigningKey() {
-
-        byte[] keyBytes = Decoders.BASE64.decode(SECRET_KEY);
-
-        return Keys.hmacShaKeyFor(keyBytes);
-    }
 }
@@ -0,0 +1,94 @@
+package com.yearis.blog_application.security;
+
+import com.yearis.blog_application.repository.UserRepository;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// we revoke all the tokens of a user by bumping the token_version column of our users table
+// this keeps a copy of those versions in memory so checking a token never needs a DB query
+@Component
+public class TokenVersionRegistry {
+
+    // a bump is committed a little after we stamp it, and our instances don't share a clock
+    // so every refresh looks this far behind the last one, and we keep bumps this much longer than a token lives
+    private static final Duration OVERLAP = Duration.ofMinutes(1);
+
+    private final UserRepository userRepository;
+
+    private final Duration tokenLifetime;
+
+    // only users that bumped their version within the last token lifetime are in here
+    private final Map<Long, Bump> versions = new ConcurrentHashMap<>();
+
+    // when our last refresh started, null until the first one
+    private volatile LocalDateTime lastRefresh;
+
+    public TokenVersionRegistry(UserRepository userRepository,
+                                @Value("${spring.jwt.expiration}") long jwtExpiration) {
+        this.userRepository = userRepository;
+        this.tokenLifetime = Duration.ofMillis(jwtExpiration);
+    }
+
+    // a version only ever goes up, so a token is revoked only if it carries an older version than the one we know
+    // a newer one just means another instance bumped it and we haven't refreshed yet
+    // once a bump is older than a token lifetime every token from before it has expired, so we can forget it
+    public boolean isCurrent(Long userId, int tokenVersion) {
+
+        Bump bump = versions.get(userId);
+
+        return bump == null || tokenVersion >= bump.version();
+    }
+
+    // we call this after bumping the version of a user so this instance doesn't wait for the next refresh
+    public void update(Long userId, int tokenVersion) {
+
+        Bump bump = new Bump(tokenVersion, LocalDateTime.now());
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    versions.merge(userId, bump, Bump::newer);
+                }
+            });
+        } else {
+            versions.merge(userId, bump, Bump::newer);
+        }
+    }
+
+    // other instances of the app may have bumped a version, so every now and then we load the ones bumped since we last looked
+    // the first refresh loads everything bumped within a token lifetime, older bumps can't revoke a token anyone still has
+    @Scheduled(fixedDelayString = "${spring.jwt.token-version.refresh-interval:30000}")
+    public void refresh() {
+
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime since = lastRefresh == null ? now.minus(tokenLifetime) : lastRefresh.minus(OVERLAP);
+
+        userRepository.findTokenVersionsChangedAfter(since)
+                .forEach(version -> versions.merge(version.getId(), new Bump(version.getTokenVersion(), version.getChangedAt()), Bump::newer));
+
+        lastRefresh = now;
+
+        LocalDateTime expired = now.minus(tokenLifetime).minus(OVERLAP);
+        versions.values().removeIf(bump -> bump.changedAt().isBefore(expired));
+    }
+
+    /// --- Internals ---
+
+    private record Bump(int version, LocalDateTime changedAt) {
+
+        // we keep whichever is bigger
+        private static Bump newer(Bump a, Bump b) {
+            return a.version() >= b.version() ? a : b;
+        }
+    }
+}
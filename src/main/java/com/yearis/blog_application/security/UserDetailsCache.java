@@ -0,0 +1,125 @@
+package com.yearis.blog_application.security;
+
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Function;
+
+// keeps the users our JwtAuthenticationFilter already loaded, so a token doesn't cost us a DB query on every request
+// NOTE: only the filter should use this. The login path erases the credentials of the principal it returns
+@Component
+public class UserDetailsCache {
+
+    private final int maxSize;
+    private final long ttl;
+
+    private final Map<String, CachedUser> cache = new ConcurrentHashMap<>();
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public UserDetailsCache(@Value("${spring.security.user-details-cache.max-size:10000}") int maxSize,
+                            @Value("${spring.security.user-details-cache.ttl:300000}") long ttl,
+                            MeterRegistry meterRegistry) {
+        this.maxSize = maxSize;
+        this.ttl = ttl;
+
+        // we expose our numbers through the actuator (/actuator/metrics/security.user-details.cache.*) so we can size it
+        FunctionCounter.builder("security.user-details.cache.gets", hits, LongAdder::doubleValue)
+                .tag("result", "hit")
+                .description("Lookups answered from the cache")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("security.user-details.cache.gets", misses, LongAdder::doubleValue)
+                .tag("result", "miss")
+                .description("Lookups that had to load the user from the database")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("security.user-details.cache.evictions", evictions, LongAdder::doubleValue)
+                .description("Entries removed because the cache was full")
+                .register(meterRegistry);
+
+        Gauge.builder("security.user-details.cache.size", cache, Map::size)
+                .description("Users currently cached")
+                .register(meterRegistry);
+    }
+
+    public UserDetails get(String username, Function<String, UserDetails> loader) {
+
+        CachedUser cached = cache.get(username);
+
+        if (cached != null && cached.expiresAt() > System.currentTimeMillis()) {
+            hits.increment();
+            return cached.userDetails();
+        }
+
+        misses.increment();
+
+        // if the user doesn't exist the loader throws, and we don't cache anything
+        UserDetails userDetails = loader.apply(username);
+
+        if (maxSize > 0) {
+
+            if (cache.size() >= maxSize) {
+                evict();
+            }
+
+            cache.put(username, new CachedUser(userDetails, System.currentTimeMillis() + ttl));
+        }
+
+        return userDetails;
+    }
+
+    // we call this whenever a user's row changes (username, email or password)
+    // if we are inside a transaction we wait for the commit, otherwise a request could cache the old row again
+    public void invalidate(String username) {
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    cache.remove(username);
+                }
+            });
+        }
+
+        cache.remove(username);
+    }
+
+    // first we drop every expired entry, if we are still full we drop the oldest ones
+    private void evict() {
+
+        long now = System.currentTimeMillis();
+        int before = cache.size();
+
+        cache.values().removeIf(cached -> cached.expiresAt() <= now);
+
+        if (cache.size() >= maxSize) {
+
+            long cutoff = cache.values().stream()
+                    .mapToLong(CachedUser::expiresAt)
+                    .sorted()
+                    .skip(maxSize / 10)
+                    .findFirst()
+                    .orElse(Long.MAX_VALUE);
+
+            cache.values().removeIf(cached -> cached.expiresAt() <= cutoff);
+        }
+
+        evictions.add(Math.max(0, before - cache.size()));
+    }
+
+    private record CachedUser(UserDetails userDetails, long expiresAt) {
+    }
+}
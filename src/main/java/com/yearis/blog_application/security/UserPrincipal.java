@@ -0,0 +1,24 @@
+package com.yearis.blog_application.security;
+
+import lombok.Getter;
+import org.springframework.security.core.GrantedAuthority;
+import org.springframework.security.core.userdetails.User;
+
+import java.util.Collection;
+
+// our own version of springs User that also remembers the id and the token version of our user
+// so that the rest of the app doesn't have to look the user up again just to get its id
+@Getter
+public class UserPrincipal extends User {
+
+    private final Long id;
+
+    private final int tokenVersion;
+
+    public UserPrincipal(Long id, String username, String password, int tokenVersion, Collection<? extends GrantedAuthority> authorities) {
+        super(username, password, authorities);
+
+        this.id = id;
+        this.tokenVersion = tokenVersion;
+    }
+}
@@ -1,10 +1,14 @@
 package com.yearis.blog_application.service;
 
 import com.yearis.blog_application.payload.request.CommentRequest;
+import com.yearis.blog_application.payload.response.CommentContextResponse;
 import com.yearis.blog_application.payload.response.CommentResponse;
+import com.yearis.blog_application.payload.response.CommentThreadResponse;
 import com.yearis.blog_application.payload.response.PostResponse;
+import com.yearis.blog_application.payload.response.ResourceVersion;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface CommentService {
 
@@ -20,6 +24,23 @@ public interface CommentService {
 
     List<CommentResponse> getRepliesByCommentId(Long postId, Long commentId, int pageNo, int pageSize);
 
+    // the comments of a post with their replies, down to depth levels and at most limitPerLevel per comment
+    CommentThreadResponse getCommentTree(Long postId, int depth, int limitPerLevel);
+
+    // a comment with its ancestors and how many replies are under it, for permalinks
+    CommentContextResponse getCommentContext(Long postId, Long commentId);
+
+    // every reply under a comment down to depth levels, flat in thread order
+    List<CommentResponse> getCommentSubtree(Long postId, Long commentId, int depth, int pageNo, int pageSize);
+
+    // just the ETags (and Last-Modified) of the reads above, without loading any comment body
+    // empty when the comment doesn't exist in this post
+    Optional<ResourceVersion> findCommentVersion(Long postId, Long commentId);
+
+    ResourceVersion findCommentsVersion(Long postId, int pageNo, int pageSize);
+
+    ResourceVersion findRepliesVersion(Long postId, Long commentId, int pageNo, int pageSize);
+
     /// U: Update
     // we need both id to verify that our comment belong to the right post or not
     CommentResponse updateComment(Long postId, Long commentId, CommentRequest commentRequest);
@@ -0,0 +1,10 @@
+package com.yearis.blog_application.service;
+
+import com.yearis.blog_application.payload.request.ImportRequest;
+import com.yearis.blog_application.payload.response.ImportResponse;
+
+public interface ImportService {
+
+    // inserts the posts and their comments in JDBC batches, all of them or none
+    ImportResponse importPosts(ImportRequest importRequest);
+}
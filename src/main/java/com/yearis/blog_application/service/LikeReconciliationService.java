@@ -0,0 +1,13 @@
+package com.yearis.blog_application.service;
+
+import com.yearis.blog_application.payload.response.ReconciliationResponse;
+
+public interface LikeReconciliationService {
+
+    // recomputes posts.likes and comments.likes from the likes table and fixes the rows that drifted
+    ReconciliationResponse reconcileLikes();
+
+    // same for posts.comment_count and comments.reply_count, recomputed from the comments table
+    // (posts/comments in the response are the rows of each table, not likes)
+    ReconciliationResponse reconcileCommentCounts();
+}
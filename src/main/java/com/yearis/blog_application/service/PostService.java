@@ -1,9 +1,17 @@
 package com.yearis.blog_application.service;
 
 import com.yearis.blog_application.payload.request.PostRequest;
+import com.yearis.blog_application.payload.response.CursorPageResponse;
+import com.yearis.blog_application.payload.response.PostBatchResponse;
+import com.yearis.blog_application.payload.response.PostJsonResponse;
 import com.yearis.blog_application.payload.response.PostResponse;
+import com.yearis.blog_application.payload.response.PostSummaryResponse;
+import com.yearis.blog_application.payload.response.PostViewsResponse;
+import com.yearis.blog_application.payload.response.ResourceVersion;
+import com.yearis.blog_application.payload.response.SuggestionResponse;
 
 import java.util.List;
+import java.util.Optional;
 
 public interface PostService {
 
@@ -15,10 +23,45 @@ public interface PostService {
     /// R: Read/Find/Get
     PostResponse findPostById(Long id);
 
+    // many posts by id in one query, for clients that hydrate a list of ids
+    PostBatchResponse findPostsByIds(List<Long> ids);
+
+    // just the ETag/Last-Modified of a post, without loading it. Empty when it doesn't exist
+    Optional<ResourceVersion> findPostVersion(Long id);
+
+    // the same post, already serialized (and gzip'd when it's big enough), mostly served from a cache
+    // version is the post's ETag from findPostVersion, so we never serve JSON cached for an older version
+    PostJsonResponse findPostJsonById(Long id, String version);
+
+    // counts one read of a post, in memory only. userId is null for anonymous reads
+    void recordView(Long id, Long userId, String remoteAddress);
+
+    // how often a post was read, and by how many different viewers
+    PostViewsResponse findPostViews(Long id);
+
     List<PostResponse> findPostByTitle(String title, int pageNo, int pageSize);
 
     List<PostResponse> findAllPosts(int pageNo, int pageSize);
 
+    // the hot or top posts (sort=hot|top), top can be limited to the last day or week (window=day|week|all)
+    List<PostResponse> findRankedPosts(String sort, String window, int pageNo, int pageSize);
+
+    // full text search over title and content, ranked by relevance
+    List<PostResponse> searchPosts(String query, int pageNo, int pageSize);
+
+    // typeahead completions for a title prefix, most liked first
+    List<SuggestionResponse> suggestPosts(String prefix, int limit);
+
+    // the same lists as above but only with a short excerpt of the content (?view=summary)
+    List<PostSummaryResponse> findAllPostSummaries(int pageNo, int pageSize);
+
+    List<PostSummaryResponse> findPostSummariesByTitle(String title, int pageNo, int pageSize);
+
+    List<PostSummaryResponse> findPostSummariesByUserId(Long userId, int pageNo, int pageSize);
+
+    // newest posts first (optionally of one user), paged with a cursor instead of a page number
+    CursorPageResponse<PostResponse> findPostFeed(Long userId, String cursor, int pageSize);
+
     /// U: Update
     PostResponse updatePost(PostRequest postRequest, Long id);
 
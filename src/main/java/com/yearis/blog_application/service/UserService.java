@@ -2,6 +2,7 @@ package com.yearis.blog_application.service;
 
 import com.yearis.blog_application.payload.request.PasswordChangeRequest;
 import com.yearis.blog_application.payload.request.UserUpdateRequest;
+import com.yearis.blog_application.payload.response.SuggestionResponse;
 import com.yearis.blog_application.payload.response.UserProfileResponse;
 
 import java.util.List;
@@ -16,7 +17,10 @@ public interface UserService {
 
     String updatePassword(PasswordChangeRequest passwordChangeRequest);
 
-    List<UserProfileResponse> searchUsers(String username);
+    List<UserProfileResponse> searchUsers(String username, int pageNo, int pageSize);
+
+    // typeahead completions for a username prefix, newest users first
+    List<SuggestionResponse> suggestUsers(String prefix, int limit);
 
     UserProfileResponse getPublicProfile(Long id);
 }
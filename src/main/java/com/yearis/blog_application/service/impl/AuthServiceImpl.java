@@ -7,17 +7,20 @@ import com.yearis.blog_application.payload.request.RegisterRequest;
 import com.yearis.blog_application.payload.response.JwtAuthResponse;
 import com.yearis.blog_application.repository.RoleRepository;
 import com.yearis.blog_application.repository.UserRepository;
+import com.yearis.blog_application.search.SuggestIndex;
 import com.yearis.blog_application.security.JwtService;
+import com.yearis.blog_application.security.UserPrincipal;
 import com.yearis.blog_application.service.AuthService;
 import org.springframework.security.authentication.AuthenticationManager;
 import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
 import org.springframework.security.core.Authentication;
-import org.springframework.security.core.userdetails.UserDetails;
+import org.springframework.security.core.GrantedAuthority;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
 import java.util.HashMap;
+import java.util.Map;
 import java.util.Set;
 
 @Service
@@ -29,13 +32,15 @@ public class AuthServiceImpl implements AuthService {
     private final AuthenticationManager authenticationManager;
     private final RoleRepository roleRepository;
     private final JwtService jwtService;
+    private final SuggestIndex suggestIndex;
 
-    public AuthServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthenticationManager authenticationManager, RoleRepository roleRepository, JwtService jwtService) {
+    public AuthServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder, AuthenticationManager authenticationManager, RoleRepository roleRepository, JwtService jwtService, SuggestIndex suggestIndex) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
         this.authenticationManager = authenticationManager;
         this.roleRepository = roleRepository;
         this.jwtService = jwtService;
+        this.suggestIndex = suggestIndex;
     }
 
     private User buildUser(RegisterRequest request) {
@@ -68,6 +73,8 @@ public class AuthServiceImpl implements AuthService {
 
         userRepository.save(user);
 
+        suggestIndex.indexUser(user.getId(), user.getUsername());
+
         return "User registered successfully!";
     }
 
@@ -80,7 +87,17 @@ public class AuthServiceImpl implements AuthService {
             new UsernamePasswordAuthenticationToken(request.getUsernameOrEmail(), request.getPassword())
         );
 
-        String token = jwtService.generateToken(new HashMap<>(), (UserDetails) authentication.getPrincipal());
+        UserPrincipal principal = (UserPrincipal) authentication.getPrincipal();
+
+        // we put everything a request needs to be authorized in the token, so the filter doesn't need the DB
+        Map<String, Object> claims = new HashMap<>();
+        claims.put(JwtService.USER_ID_CLAIM, principal.getId());
+        claims.put(JwtService.ROLES_CLAIM, principal.getAuthorities().stream()
+                .map(GrantedAuthority::getAuthority)
+                .toList());
+        claims.put(JwtService.TOKEN_VERSION_CLAIM, principal.getTokenVersion());
+
+        String token = jwtService.generateToken(claims, principal);
 
         return new JwtAuthResponse(token);
     }
@@ -0,0 +1,59 @@
+package com.yearis.blog_application.service.impl;
+
+import java.util.ArrayList;
+import java.util.List;
+
+// the materialized path of a comment: the ids from its root comment down to itself, each as 8 base-36 chars
+// e.g. "0000007p0000007q" is comment 10010, reply to 10009
+//
+// every segment has the same width, so the comments of a subtree are exactly the paths with its prefix
+// (one range scan on idx_comments_path) and sorting by path gives the thread order, oldest reply first
+final class CommentPath {
+
+    static final int SEGMENT_LENGTH = 8;
+
+    // the column is 1024 chars
+    static final int MAX_DEPTH = 1024 / SEGMENT_LENGTH;
+
+    private CommentPath() {
+    }
+
+    // parentPath is null for a root comment
+    static String of(String parentPath, Long id) {
+
+        String segment = Long.toString(id, 36);
+
+        return (parentPath != null ? parentPath : "") + "0".repeat(SEGMENT_LENGTH - segment.length()) + segment;
+    }
+
+    // 0 for a root comment
+    static int depth(String path) {
+
+        return path.length() / SEGMENT_LENGTH - 1;
+    }
+
+    // the LIKE pattern matching everything under the comment, but not the comment itself
+    // (base-36 has no '%' or '_' of its own, so nothing needs escaping)
+    static String descendantsPattern(String path) {
+
+        return path + "_%";
+    }
+
+    // the longest path of a descendant at most levels below the comment
+    static int maxLength(String path, int levels) {
+
+        return path.length() + levels * SEGMENT_LENGTH;
+    }
+
+    // the ids of the ancestors of the comment, root first, without the comment itself
+    static List<Long> ancestorIds(String path) {
+
+        List<Long> ids = new ArrayList<>();
+
+        for (int start = 0; start + SEGMENT_LENGTH < path.length(); start += SEGMENT_LENGTH) {
+            ids.add(Long.parseLong(path, start, start + SEGMENT_LENGTH, 36));
+        }
+
+        return ids;
+    }
+}
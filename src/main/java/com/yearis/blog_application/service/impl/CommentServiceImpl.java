@@ -7,24 +7,34 @@ import com.yearis.blog_application.entity.User;
 import com.yearis.blog_application.exception.BlogAPIException;
 import com.yearis.blog_application.exception.ResourceNotFoundException;
 import com.yearis.blog_application.payload.request.CommentRequest;
+import com.yearis.blog_application.payload.response.CommentContextResponse;
 import com.yearis.blog_application.payload.response.CommentResponse;
+import com.yearis.blog_application.payload.response.CommentThreadResponse;
+import com.yearis.blog_application.payload.response.CommentTreeResponse;
+import com.yearis.blog_application.payload.response.ResourceVersion;
 import com.yearis.blog_application.repository.CommentRepository;
 import com.yearis.blog_application.repository.LikeRepository;
 import com.yearis.blog_application.repository.PostRepository;
-import com.yearis.blog_application.repository.UserRepository;
+import com.yearis.blog_application.security.CurrentUser;
 import com.yearis.blog_application.service.CommentService;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HexFormat;
 import java.util.List;
-import java.util.Objects;
+import java.util.Map;
+import java.util.Optional;
 import java.util.stream.Collectors;
 
 @Service
@@ -33,23 +43,44 @@ public class CommentServiceImpl implements CommentService {
 
     private final CommentRepository commentRepository;
     private final PostRepository postRepository;
-    private final UserRepository userRepository;
     private final LikeRepository likeRepository;
 
-    public CommentServiceImpl(CommentRepository commentRepository, PostRepository postRepository, UserRepository userRepository, LikeRepository likeRepository) {
-        this.commentRepository = commentRepository;
-        this.postRepository = postRepository;
-        this.userRepository = userRepository;
-        this.likeRepository = likeRepository;
-    }
+    // our current user, resolved at most once per request
+    private final CurrentUser currentUser;
 
-    // get our current user
-    private User currentUser() {
+    private final LikeCounterBuffer likeCounterBuffer;
 
-        String usernameOrEmail = Objects.requireNonNull(SecurityContextHolder.getContext().getAuthentication()).getName();
+    // comments push their post up in the hot feed
+    private final PostRanking postRanking;
 
-        return userRepository.findByUsernameOrEmail(usernameOrEmail, usernameOrEmail)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+    // a post shows its comment count, so a new or deleted comment changes our cached copies of it
+    private final PostFeedCache postFeedCache;
+    private final PostJsonCache postJsonCache;
+
+    // the whole thread of a post in one query
+    private final CommentThreadQuery commentThreadQuery;
+
+    // bounds of GET .../comments/tree, so one request can't pull a huge thread
+    private final int maxTreeDepth;
+    private final int maxTreeLimitPerLevel;
+    private final int maxTreeRows;
+
+    public CommentServiceImpl(CommentRepository commentRepository, PostRepository postRepository, LikeRepository likeRepository, CurrentUser currentUser, LikeCounterBuffer likeCounterBuffer, PostRanking postRanking, PostFeedCache postFeedCache, PostJsonCache postJsonCache, CommentThreadQuery commentThreadQuery,
+                              @Value("${spring.comments.tree.max-depth:10}") int maxTreeDepth,
+                              @Value("${spring.comments.tree.max-limit-per-level:50}") int maxTreeLimitPerLevel,
+                              @Value("${spring.comments.tree.max-rows:2000}") int maxTreeRows) {
+        this.commentRepository = commentRepository;
+        this.postRepository = postRepository;
+        this.likeRepository = likeRepository;
+        this.currentUser = currentUser;
+        this.likeCounterBuffer = likeCounterBuffer;
+        this.postRanking = postRanking;
+        this.postFeedCache = postFeedCache;
+        this.postJsonCache = postJsonCache;
+        this.commentThreadQuery = commentThreadQuery;
+        this.maxTreeDepth = maxTreeDepth;
+        this.maxTreeLimitPerLevel = maxTreeLimitPerLevel;
+        this.maxTreeRows = maxTreeRows;
     }
 
     /// --- Mappers ---
@@ -64,7 +95,9 @@ public class CommentServiceImpl implements CommentService {
         response.setBody(comment.getBody());
         response.setCreatedDate(comment.getCreatedDate());
         response.setEdited(comment.isEdited());
-        response.setLikes(comment.getLikes());
+        // we add the likes that are still buffered, so a user sees their own like right away
+        response.setLikes(comment.getLikes() + (int) likeCounterBuffer.pendingCommentLikes(comment.getId()));
+        response.setReplyCount(comment.getReplyCount());
 
         // post info
         response.setPostId(comment.getPost().getId());
@@ -82,18 +115,46 @@ public class CommentServiceImpl implements CommentService {
         } else {
 
             response.setAuthorId(null);
+            response.setAuthorName(removedAuthorName(comment.getBody()));
+        }
 
-            // Check body to decide label
-            if ("[deleted by user]".equals(comment.getBody()) || "[removed by admin]".equals(comment.getBody())) {
-                response.setAuthorName("[removed]"); // User deleted the comment
-            } else {
-                response.setAuthorName("[deleted]"); // User deleted their account
-            }
+        return response;
+    }
+
+    // same as above, for a comment loaded as part of a thread
+    private CommentResponse mapToResponse(CommentThreadQuery.ThreadRow row, Long postId) {
+
+        CommentResponse response = new CommentResponse();
+
+        response.setId(row.id());
+        response.setBody(row.body());
+        response.setCreatedDate(row.createdDate());
+        response.setEdited(row.edited());
+        response.setLikes(row.likes() + (int) likeCounterBuffer.pendingCommentLikes(row.id()));
+        response.setReplyCount(row.replyCount());
+        response.setPostId(postId);
+        response.setParentId(row.parentId());
+
+        if (row.authorId() != null) {
+            response.setAuthorId(row.authorId());
+            response.setAuthorName(row.authorName());
+        } else {
+            response.setAuthorName(removedAuthorName(row.body()));
         }
 
         return response;
     }
 
+    // a comment without author, check body to decide label
+    private static String removedAuthorName(String body) {
+
+        if ("[deleted by user]".equals(body) || "[removed by admin]".equals(body)) {
+            return "[removed]"; // User deleted the comment
+        }
+
+        return "[deleted]"; // User deleted their account
+    }
+
     // Convert Request DTO -> Entity
     private Comment mapToEntity(CommentRequest request) {
 
@@ -121,8 +182,10 @@ public class CommentServiceImpl implements CommentService {
                         .orElseThrow(() -> new ResourceNotFoundException("Post", "post Id", postId));
 
         // now we link our comment to a post then to current user
+        // we load our user once as the response needs the username
+        User author = currentUser.get();
         comment.setPost(post);
-        comment.setAuthor(currentUser());
+        comment.setAuthor(author);
 
         // now we check if our comment has a parent or not
         // if it has a parent
@@ -137,19 +200,41 @@ public class CommentServiceImpl implements CommentService {
                 throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Comment doesn't belong to the post");
             }
 
+            // our path has one segment per level, the column only has room for so many
+            if (CommentPath.depth(pathOf(parent)) + 1 >= CommentPath.MAX_DEPTH) {
+                throw new BlogAPIException(HttpStatus.BAD_REQUEST, "This thread is too deep to reply to");
+            }
+
             comment.setParent(parent);
         }
 
         // now we save our comment to DB
         Comment newComment = commentRepository.save(comment);
 
+        // the path ends with our own id, which we only have now
+        newComment.setPath(CommentPath.of(newComment.getParent() != null ? pathOf(newComment.getParent()) : null, newComment.getId()));
+
+        // with the path set we INSERT it right away, @CreationTimestamp is only filled in by the INSERT and our response needs it
+        commentRepository.flush();
+
         Like firstLike = new Like();
-        firstLike.setUser(currentUser());
+        firstLike.setUser(author);
         firstLike.setComment(newComment);
         // and we don't set the post as this like is only for comment
 
         likeRepository.save(firstLike);
 
+        // the counters move in the same transaction, in place, so parallel comments never lose a count
+        postRepository.updateCommentCount(postId, 1);
+
+        if (newComment.getParent() != null) {
+            commentRepository.updateReplyCount(newComment.getParent().getId(), 1);
+        }
+
+        postRanking.addComments(postId, 1);
+        postFeedCache.addComments(postId, 1);
+        postJsonCache.invalidate(postId);
+
         return mapToResponse(newComment);
     }
 
@@ -212,6 +297,171 @@ public class CommentServiceImpl implements CommentService {
                 .collect(Collectors.toList());
     }
 
+    // instead of one call for the root comments and one per expanded comment, the whole thread at once
+    @Override
+    @Transactional(readOnly = true)
+    public CommentThreadResponse getCommentTree(Long postId, int depth, int limitPerLevel) {
+
+        if (depth < 1 || depth > maxTreeDepth || limitPerLevel < 1 || limitPerLevel > maxTreeLimitPerLevel) {
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST,
+                    "depth must be between 1 and " + maxTreeDepth + ", limitPerLevel between 1 and " + maxTreeLimitPerLevel);
+        }
+
+        if (!postRepository.existsById(postId)) {
+            throw new ResourceNotFoundException("Post", "post Id", postId);
+        }
+
+        // limitPerLevel is applied in the query, on every level, maxTreeRows only caps the total on top of it
+        List<CommentThreadQuery.ThreadRow> rows = commentThreadQuery.load(postId, depth, limitPerLevel, maxTreeRows);
+
+        // the rows come level by level, so a reply always finds its parent here
+        // a reply whose parent we left out is left out too
+        Map<Long, CommentTreeResponse> nodes = new HashMap<>();
+        List<CommentTreeResponse> roots = new ArrayList<>();
+
+        for (CommentThreadQuery.ThreadRow row : rows) {
+
+            CommentTreeResponse parent = row.parentId() != null ? nodes.get(row.parentId()) : null;
+
+            if (row.parentId() != null && parent == null) {
+                continue;
+            }
+
+            List<CommentTreeResponse> siblings = parent != null ? parent.getReplies() : roots;
+
+            // every reply we show is one less the frontend has to load
+            CommentTreeResponse node = new CommentTreeResponse(mapToResponse(row, postId), new ArrayList<>(), row.replyCount());
+            siblings.add(node);
+            nodes.put(row.id(), node);
+
+            if (parent != null) {
+                // (never below 0, the counter can be behind until the reconciliation job fixes it)
+                parent.setMoreReplies(Math.max(0, parent.getMoreReplies() - 1));
+            }
+        }
+
+        int rootCount = rows.isEmpty() ? 0 : rows.get(0).rootCount();
+
+        return new CommentThreadResponse(postId, roots, rootCount - roots.size());
+    }
+
+    // a permalink: the comment, the chain of comments it replies to and how many replies it has below it
+    @Override
+    @Transactional(readOnly = true)
+    public CommentContextResponse getCommentContext(Long postId, Long commentId) {
+
+        Comment comment = findInPost(postId, commentId);
+
+        String path = pathOf(comment);
+
+        // the ancestor ids are in our path, so the whole chain is one primary key lookup
+        List<CommentResponse> ancestors = commentRepository.findByIdInOrderByPathAsc(CommentPath.ancestorIds(path)).stream()
+                .map(this::mapToResponse)
+                .collect(Collectors.toList());
+
+        long descendantCount = commentRepository.countSubtree(CommentPath.descendantsPattern(path));
+
+        return new CommentContextResponse(ancestors, mapToResponse(comment), descendantCount);
+    }
+
+    // the replies of a comment at every level (down to depth levels below it), flat and in thread order
+    @Override
+    @Transactional(readOnly = true)
+    public List<CommentResponse> getCommentSubtree(Long postId, Long commentId, int depth, int pageNo, int pageSize) {
+
+        if (depth < 1) {
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "depth must be at least 1");
+        }
+
+        String path = pathOf(findInPost(postId, commentId));
+
+        // the order is in the query (by path), so the page itself is unsorted
+        Pageable pageable = PageRequest.of(pageNo, pageSize);
+
+        return commentRepository.findSubtree(CommentPath.descendantsPattern(path),
+                        CommentPath.maxLength(path, depth), pageable).stream()
+                .map(this::mapToResponse)
+                .collect(Collectors.toList());
+    }
+
+    private Comment findInPost(Long postId, Long commentId) {
+
+        Comment comment = commentRepository.findById(commentId)
+                .orElseThrow(() -> new ResourceNotFoundException("Comment", "comment Id", commentId));
+
+        if (!comment.getPost().getId().equals(postId)) {
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Comment doesn't belong to the post");
+        }
+
+        return comment;
+    }
+
+    // the path of a comment, rebuilt from its parents when it has none
+    // every comment gets one on create and V6 backfilled the older ones, this is for a row that slipped through anyway:
+    // it would otherwise give its replies a root path, or fail the request. In a write transaction the repaired path is saved too
+    private static String pathOf(Comment comment) {
+
+        if (comment.getPath() == null) {
+            Comment parent = comment.getParent();
+            comment.setPath(CommentPath.of(parent != null ? pathOf(parent) : null, comment.getId()));
+        }
+
+        return comment.getPath();
+    }
+
+    /// R: Versions (for conditional GETs)
+
+    // we never load a comment here, only its version columns
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ResourceVersion> findCommentVersion(Long postId, Long commentId) {
+
+        return commentRepository.findVersionByIdAndPostId(commentId, postId)
+                .map(version -> new ResourceVersion("\"" + versionOf(version) + "\"", version.getLastModifiedDate()));
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ResourceVersion findCommentsVersion(Long postId, int pageNo, int pageSize) {
+
+        // same page as getCommentsByPostId
+        Pageable pageable = PageRequest.of(pageNo, pageSize, Sort.by("likes").descending());
+
+        return new ResourceVersion(etagOf(commentRepository.findVersionsByPostId(postId, pageable).getContent()), null);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public ResourceVersion findRepliesVersion(Long postId, Long commentId, int pageNo, int pageSize) {
+
+        // same page as getRepliesByCommentId
+        Pageable pageable = PageRequest.of(pageNo, pageSize, Sort.by("createdDate").ascending());
+
+        return new ResourceVersion(etagOf(commentRepository.findVersionsByParentId(commentId, postId, pageable).getContent()), null);
+    }
+
+    private static String versionOf(CommentRepository.VersionView version) {
+
+        return version.getVersion() + "." + (version.getAuthorVersion() != null ? version.getAuthorVersion() : -1);
+    }
+
+    // a list changes when any of its comments changes, or when one comes or goes, so we hash all of them
+    private static String etagOf(List<CommentRepository.VersionView> versions) {
+
+        StringBuilder page = new StringBuilder();
+        versions.forEach(version -> page.append(version.getId()).append(':').append(versionOf(version)).append(','));
+
+        try {
+            byte[] hash = MessageDigest.getInstance("SHA-256").digest(page.toString().getBytes(StandardCharsets.UTF_8));
+
+            return "\"" + HexFormat.of().formatHex(hash, 0, 16) + "\"";
+        } catch (NoSuchAlgorithmException e) {
+            // every JVM has SHA-256
+            throw new IllegalStateException(e);
+        }
+    }
+
     /// U: Update
 
     @Override
@@ -232,11 +482,9 @@ public class CommentServiceImpl implements CommentService {
         }
 
         // now we check that does user even has authority to update comment
-        User currentUser = currentUser();
-
         User owner = comment.getAuthor();
 
-        if (!currentUser.equals(owner)) {
+        if (!currentUser.is(owner)) {
 
             throw new BlogAPIException(HttpStatus.UNAUTHORIZED, "Unauthorized Access!");
         }
@@ -269,13 +517,12 @@ public class CommentServiceImpl implements CommentService {
             throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Comment doesn't belong to the post");
         }
 
-        User currentUser = currentUser();
         User postOwner = post.getAuthor();
         User commentOwner = comment.getAuthor();
 
-        boolean isCommentOwner = currentUser.equals(commentOwner);
-        boolean isPostOwner = currentUser.equals(postOwner);
-        boolean isAdmin = currentUser.getRoles().stream().anyMatch(role -> role.getName().equals("ROLE_ADMIN"));
+        boolean isCommentOwner = currentUser.is(commentOwner);
+        boolean isPostOwner = currentUser.is(postOwner);
+        boolean isAdmin = currentUser.isAdmin();
 
         // as an admin should be allowed to delete inappropriate posts
         if (!isCommentOwner && !isPostOwner && !isAdmin) {
@@ -285,8 +532,12 @@ public class CommentServiceImpl implements CommentService {
 
         // now we need it so that when parent comment is deleted it doesn't collapse the replies
 
-        // check if any replies in the list
-        if (comment.getReplies() != null && !comment.getReplies().isEmpty()) {
+        // check if it has any replies, our reply counter tells us without loading them
+        // a 0 we confirm first: the counter can be behind until the reconciliation job fixes it,
+        // and a hard delete would cascade away replies it didn't know about
+        boolean hasReplies = comment.getReplyCount() > 0 || commentRepository.existsByParentId(commentId);
+
+        if (hasReplies) {
 
             if ((isAdmin || isPostOwner) && !isCommentOwner) {
                 comment.setBody("[removed by admin]"); // Admin or Post Owner removed it
@@ -303,6 +554,16 @@ public class CommentServiceImpl implements CommentService {
 
             // if their no comments we can safely delete it
             commentRepository.delete(comment);
+
+            postRepository.updateCommentCount(postId, -1);
+
+            if (comment.getParent() != null) {
+                commentRepository.updateReplyCount(comment.getParent().getId(), -1);
+            }
+
+            postRanking.addComments(postId, -1);
+            postFeedCache.addComments(postId, -1);
+            postJsonCache.invalidate(postId);
         }
     }
 
@@ -313,9 +574,6 @@ public class CommentServiceImpl implements CommentService {
     @Transactional(readOnly = true)
     public List<CommentResponse> getCommentsByUserId(Long userId, int pageNo, int pageSize) {
 
-        // we get the current user
-        User currentUser = currentUser();
-
         // here we check if our current user's id is same as what's being passed in the methods
         // as comments are not public but private
         if (!currentUser.getId().equals(userId)) {
@@ -340,9 +598,6 @@ public class CommentServiceImpl implements CommentService {
     @Transactional(readOnly = true)
     public List<CommentResponse> findLikedCommentsByUserId(Long userId, int pageNo, int pageSize) {
 
-        // get current user
-        User currentUser = currentUser();
-
         // here we check if our current user's id is same as what's being passed in the methods
         if (!currentUser.getId().equals(userId)) {
 
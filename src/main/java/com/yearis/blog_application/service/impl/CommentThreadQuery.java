@@ -0,0 +1,104 @@
+package com.yearis.blog_application.service.impl;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Component;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+// the comments of a post as a thread, down to a given depth, in one query
+//
+// every level is a CTE of its own: the replies of the comments we kept one level up (parent_id is indexed by its
+// foreign key), numbered per parent, and only the first limitPerLevel of every parent are kept. So we only ever walk
+// below comments we show, and a post with thousands of root comments still gets its replies.
+// Then we join the rest of each comment and its author once. The rows come back level by level,
+// so a parent is always before its replies and the tree can be put together in one pass
+//
+// (MySQL doesn't allow a window function in the recursive part of a recursive CTE, so we spell out the levels,
+// the statement for every depth is built once)
+@Component
+public class CommentThreadQuery {
+
+    private final Map<Integer, String> sqlByDepth = new ConcurrentHashMap<>();
+
+    private final JdbcTemplate jdbcTemplate;
+
+    public CommentThreadQuery(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    // replyCount is every direct reply of the comment (our counter), also the ones that are too deep or past the limit
+    // rootCount is the same on every row: all the root comments of the post
+    public record ThreadRow(long id, Long parentId, int depth, String body, LocalDateTime createdDate, boolean edited,
+                            int likes, Long authorId, String authorName, int replyCount, int rootCount) {
+    }
+
+    // at most limitPerLevel root comments and limitPerLevel replies of every comment we keep, at most depth levels deep,
+    // in thread order. maxRows only guards the total, the levels are already bounded
+    public List<ThreadRow> load(Long postId, int depth, int limitPerLevel, int maxRows) {
+
+        List<Object> args = new ArrayList<>(depth + 2);
+        args.add(postId);
+
+        for (int level = 0; level < depth; level++) {
+            args.add(limitPerLevel);
+        }
+
+        args.add(maxRows);
+
+        return jdbcTemplate.query(sqlByDepth.computeIfAbsent(depth, CommentThreadQuery::threadSql),
+                (rs, rowNum) -> new ThreadRow(
+                        rs.getLong("id"),
+                        rs.getObject("parent_id", Long.class),
+                        rs.getInt("depth"),
+                        rs.getString("body"),
+                        rs.getObject("created_date", LocalDateTime.class),
+                        rs.getBoolean("edited"),
+                        rs.getInt("likes"),
+                        rs.getObject("user_id", Long.class),
+                        rs.getString("username"),
+                        rs.getInt("reply_count"),
+                        rs.getInt("root_count")),
+                args.toArray());
+    }
+
+    // same orders as our paged endpoints: root comments by likes, replies oldest first
+    private static String threadSql(int depth) {
+
+        StringBuilder sql = new StringBuilder("WITH ");
+
+        sql.append("level0 AS (SELECT c.id, c.parent_id, 0 AS depth, ")
+                .append("ROW_NUMBER() OVER (ORDER BY c.likes DESC, c.created_date, c.id) AS rn, COUNT(*) OVER () AS root_count ")
+                .append("FROM comments c WHERE c.post_id = ? AND c.parent_id IS NULL), ")
+                .append("kept0 AS (SELECT id, parent_id, depth, rn, root_count FROM level0 WHERE rn <= ?)");
+
+        for (int level = 1; level < depth; level++) {
+
+            sql.append(", level").append(level).append(" AS (SELECT c.id, c.parent_id, ").append(level).append(" AS depth, ")
+                    .append("ROW_NUMBER() OVER (PARTITION BY c.parent_id ORDER BY c.created_date, c.id) AS rn, 0 AS root_count ")
+                    .append("FROM comments c JOIN kept").append(level - 1).append(" p ON c.parent_id = p.id), ")
+                    .append("kept").append(level).append(" AS (SELECT id, parent_id, depth, rn, root_count FROM level").append(level)
+                    .append(" WHERE rn <= ?)");
+        }
+
+        sql.append(", thread AS (");
+
+        for (int level = 0; level < depth; level++) {
+            sql.append(level == 0 ? "" : " UNION ALL ").append("SELECT id, parent_id, depth, rn, root_count FROM kept").append(level);
+        }
+
+        // rn within a level only orders the siblings of the same parent, which is all the tree needs
+        return sql.append(") ")
+                .append("SELECT c.id, t.parent_id, t.depth, c.body, c.created_date, c.edited, c.likes, c.user_id, u.username, c.reply_count, ")
+                .append("MAX(t.root_count) OVER () AS root_count ")
+                .append("FROM thread t ")
+                .append("JOIN comments c ON c.id = t.id ")
+                .append("LEFT JOIN users u ON u.id = c.user_id ")
+                .append("ORDER BY t.depth, t.rn, t.id ")
+                .append("LIMIT ?")
+                .toString();
+    }
+}
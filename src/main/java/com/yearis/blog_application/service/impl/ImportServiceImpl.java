@@ -0,0 +1,186 @@
+package com.yearis.blog_application.service.impl;
+
+import com.yearis.blog_application.entity.Comment;
+import com.yearis.blog_application.entity.Post;
+import com.yearis.blog_application.exception.BlogAPIException;
+import com.yearis.blog_application.payload.request.ImportCommentRequest;
+import com.yearis.blog_application.payload.request.ImportPostRequest;
+import com.yearis.blog_application.payload.request.ImportRequest;
+import com.yearis.blog_application.payload.response.ImportResponse;
+import com.yearis.blog_application.repository.CommentRepository;
+import com.yearis.blog_application.repository.PostRepository;
+import com.yearis.blog_application.repository.UserRepository;
+import com.yearis.blog_application.search.PostSearchIndex;
+import com.yearis.blog_application.search.SuggestIndex;
+import com.yearis.blog_application.service.ImportService;
+import jakarta.persistence.EntityManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.annotation.Transactional;
+
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+// bulk imports of posts and their comments for admins (e.g. moving a blog over from somewhere else)
+//
+// our ids come from id_generators in blocks, so persisting only queues the inserts. Every batch-size rows
+// we flush them (one multi-row INSERT per table with rewriteBatchedStatements) and clear the persistence context,
+// so a big import neither runs a round trip per row nor keeps every entity in memory
+@Service
+public class ImportServiceImpl implements ImportService {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportServiceImpl.class);
+
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final UserRepository userRepository;
+    private final EntityManager entityManager;
+
+    private final PostSearchIndex postSearchIndex;
+    private final SuggestIndex suggestIndex;
+    private final PostRanking postRanking;
+
+    // same as hibernate.jdbc.batch_size, a flush then fills exactly one batch per table
+    private final int batchSize;
+
+    // the most posts + comments one import can have
+    private final int maxRows;
+
+    public ImportServiceImpl(PostRepository postRepository,
+                             CommentRepository commentRepository,
+                             UserRepository userRepository,
+                             EntityManager entityManager,
+                             PostSearchIndex postSearchIndex,
+                             SuggestIndex suggestIndex,
+                             PostRanking postRanking,
+                             @Value("${spring.jpa.properties.hibernate.jdbc.batch_size:50}") int batchSize,
+                             @Value("${spring.admin.import.max-rows:10000}") int maxRows) {
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.userRepository = userRepository;
+        this.entityManager = entityManager;
+        this.postSearchIndex = postSearchIndex;
+        this.suggestIndex = suggestIndex;
+        this.postRanking = postRanking;
+        this.batchSize = Math.max(batchSize, 1);
+        this.maxRows = maxRows;
+    }
+
+    // one transaction for the whole import, a failed import can simply be sent again without duplicating anything
+    @Override
+    @Transactional
+    public ImportResponse importPosts(ImportRequest importRequest) {
+
+        long start = System.currentTimeMillis();
+
+        List<ImportPostRequest> posts = importRequest.getPosts();
+
+        long rows = posts.size() + posts.stream().mapToLong(post -> comments(post).size()).sum();
+
+        if (rows > maxRows) {
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "An import can have at most " + maxRows + " posts and comments");
+        }
+
+        checkAuthorsExist(posts);
+
+        long postsImported = 0;
+        long commentsImported = 0;
+        int pending = 0;
+
+        for (ImportPostRequest postRequest : posts) {
+
+            Post post = new Post();
+            post.setTitle(postRequest.getTitle());
+            post.setContent(postRequest.getContent());
+            post.setAuthor(userRepository.getReferenceById(postRequest.getAuthorId()));
+
+            // nobody liked an imported post yet (there is no like row behind it), and we know its comments up front
+            post.setLikes(0);
+            post.setCommentCount(comments(postRequest).size());
+
+            Post newPost = postRepository.save(post);
+
+            postSearchIndex.indexPost(newPost.getId(), newPost.getTitle(), newPost.getContent());
+            suggestIndex.indexPost(newPost.getId(), newPost.getTitle(), 0);
+            postRanking.postCreated(newPost.getId(), newPost.getCreatedDate(), 0);
+
+            postsImported++;
+            pending++;
+
+            for (ImportCommentRequest commentRequest : comments(postRequest)) {
+
+                Comment comment = new Comment();
+                comment.setBody(commentRequest.getBody());
+                comment.setPost(newPost);
+                comment.setAuthor(userRepository.getReferenceById(commentRequest.getAuthorId()));
+                comment.setLikes(0);
+
+                Comment newComment = commentRepository.save(comment);
+
+                // a root comment's path is just its own id, which save gave us without an insert.
+                // Hibernate still writes it with an UPDATE after the INSERT, batched with the others of the flush
+                newComment.setPath(CommentPath.of(null, newComment.getId()));
+
+                commentsImported++;
+                pending++;
+            }
+
+            if (pending >= batchSize) {
+                flushAndClear();
+                pending = 0;
+            }
+        }
+
+        flushAndClear();
+
+        long durationMs = System.currentTimeMillis() - start;
+
+        ImportResponse response = new ImportResponse();
+        response.setPostsImported(postsImported);
+        response.setCommentsImported(commentsImported);
+        response.setDurationMs(durationMs);
+        response.setRowsPerSecond((postsImported + commentsImported) * 1000 / Math.max(durationMs, 1));
+
+        // the first feed pages pick the new posts up on their next reload (spring.posts.feed-cache.ttl)
+        log.info("Imported {} posts and {} comments in {} ms ({} rows/s, batch size {})",
+                postsImported, commentsImported, durationMs, response.getRowsPerSecond(), batchSize);
+
+        return response;
+    }
+
+    /// --- Internals ---
+
+    // all the author ids of the import in one query, an unknown one fails the import before anything is written
+    private void checkAuthorsExist(List<ImportPostRequest> posts) {
+
+        Set<Long> authorIds = new HashSet<>();
+
+        for (ImportPostRequest post : posts) {
+            authorIds.add(post.getAuthorId());
+            comments(post).forEach(comment -> authorIds.add(comment.getAuthorId()));
+        }
+
+        Set<Long> missing = new HashSet<>(authorIds);
+        userRepository.findExistingIds(authorIds).forEach(missing::remove);
+
+        if (!missing.isEmpty()) {
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Users not found: " + missing);
+        }
+    }
+
+    // the queued inserts go out in batches, then we forget the entities so the next batch starts from an empty context
+    private void flushAndClear() {
+
+        entityManager.flush();
+        entityManager.clear();
+    }
+
+    private static List<ImportCommentRequest> comments(ImportPostRequest post) {
+
+        return post.getComments() != null ? post.getComments() : List.of();
+    }
+}
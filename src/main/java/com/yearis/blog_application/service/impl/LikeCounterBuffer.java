@@ -0,0 +1,231 @@
+package com.yearis.blog_application.service.impl;
+
+import com.yearis.blog_application.repository.CommentRepository;
+import com.yearis.blog_application.repository.PostRepository;
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.concurrent.locks.ReadWriteLock;
+import java.util.concurrent.locks.ReentrantReadWriteLock;
+
+// where our like toggles send their +1/-1 for posts.likes and comments.likes
+// by default we update the row right away, but in "buffered counters" mode we keep the deltas in memory
+// and flush them in one batch every few ms, so a trending post doesn't serialize every like on its row lock
+@Component
+public class LikeCounterBuffer {
+
+    private static final Logger log = LoggerFactory.getLogger(LikeCounterBuffer.class);
+
+    private final boolean enabled;
+
+    private final PostRepository postRepository;
+    private final CommentRepository commentRepository;
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    private final Counters posts = new Counters("UPDATE posts SET likes = likes + ?, version = version + 1, last_modified_date = NOW(6) WHERE id = ?");
+    private final Counters comments = new Counters("UPDATE comments SET likes = likes + ?, version = version + 1, last_modified_date = NOW(6) WHERE id = ?");
+
+    public LikeCounterBuffer(@Value("${spring.likes.buffered-counters.enabled:false}") boolean enabled,
+                             PostRepository postRepository,
+                             CommentRepository commentRepository,
+                             JdbcTemplate jdbcTemplate,
+                             TransactionTemplate transactionTemplate) {
+        this.enabled = enabled;
+        this.postRepository = postRepository;
+        this.commentRepository = commentRepository;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public void addPostLikes(Long postId, int delta) {
+
+        if (enabled) {
+            afterCommit(() -> posts.add(postId, delta));
+        } else {
+            postRepository.updateLikes(postId, delta);
+        }
+    }
+
+    public void addCommentLikes(Long commentId, int delta) {
+
+        if (enabled) {
+            afterCommit(() -> comments.add(commentId, delta));
+        } else {
+            commentRepository.updateLikes(commentId, delta);
+        }
+    }
+
+    // the likes that are not in the DB yet, our mappers add these so a user sees their own like immediately
+    public long pendingPostLikes(Long postId) {
+
+        return enabled ? posts.pending(postId) : 0;
+    }
+
+    public long pendingCommentLikes(Long commentId) {
+
+        return enabled ? comments.pending(commentId) : 0;
+    }
+
+    @Scheduled(fixedDelayString = "${spring.likes.buffered-counters.flush-interval:1000}")
+    public void flush() {
+
+        if (enabled) {
+            posts.flush();
+            comments.flush();
+        }
+    }
+
+    // we don't want to lose the pending likes when the app stops
+    @PreDestroy
+    public void flushOnShutdown() {
+
+        flush();
+    }
+
+    // the likes row is only there after the commit, so the counter should only move then
+    private void afterCommit(Runnable action) {
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    // one LongAdder per post/comment id, so parallel likes on the same post don't fight over a single lock
+    private class Counters {
+
+        private final String updateSql;
+
+        private final Map<Long, LongAdder> deltas = new ConcurrentHashMap<>();
+
+        // what the flush currently writes, still counted as pending until it's committed
+        private Map<Long, Long> inFlight = Map.of();
+
+        // a flush moves every delta from its adder to inFlight (and drops inFlight after the commit) under the write lock,
+        // pending() reads both under the read lock, so a reader never catches a delta that is in neither of them
+        // (likes themselves only add to the adders and don't take it)
+        private final ReadWriteLock lock = new ReentrantReadWriteLock();
+
+        Counters(String updateSql) {
+            this.updateSql = updateSql;
+        }
+
+        void add(Long id, long delta) {
+
+            if (delta == 0) {
+                return;
+            }
+
+            LongAdder adder = deltas.computeIfAbsent(id, key -> new LongAdder());
+            adder.add(delta);
+
+            // the flush may have removed this adder while we were adding to it,
+            // in that case we take our delta (or whatever is left in it) back into the map
+            if (deltas.get(id) != adder) {
+                add(id, adder.sumThenReset());
+            }
+        }
+
+        long pending(Long id) {
+
+            lock.readLock().lock();
+
+            try {
+                LongAdder adder = deltas.get(id);
+
+                return (adder != null ? adder.sum() : 0) + inFlight.getOrDefault(id, 0L);
+            } finally {
+                lock.readLock().unlock();
+            }
+        }
+
+        synchronized void flush() {
+
+            Map<Long, Long> batch = drain();
+
+            if (batch.isEmpty()) {
+                return;
+            }
+
+            List<Object[]> args = new ArrayList<>(batch.size());
+            batch.forEach((id, delta) -> args.add(new Object[]{delta, id}));
+
+            try {
+                // every row in one JDBC batch and one transaction
+                transactionTemplate.executeWithoutResult(status -> jdbcTemplate.batchUpdate(updateSql, args));
+            } catch (RuntimeException e) {
+                // we put the deltas back so the next flush tries again
+                log.warn("Could not flush {} like counters, retrying on the next flush", batch.size(), e);
+                endFlight(batch);
+                return;
+            }
+
+            // committed, from now on the rows have them
+            endFlight(Map.of());
+        }
+
+        // takes every delta out of its adder and into inFlight
+        private Map<Long, Long> drain() {
+
+            Map<Long, Long> batch = new HashMap<>();
+
+            lock.writeLock().lock();
+
+            try {
+                for (Map.Entry<Long, LongAdder> entry : deltas.entrySet()) {
+
+                    long delta = entry.getValue().sumThenReset();
+
+                    if (delta != 0) {
+                        batch.put(entry.getKey(), delta);
+                    } else if (deltas.remove(entry.getKey(), entry.getValue())) {
+                        // nothing happened on this id since the last flush, so we drop its adder
+                        // and hand back anything that was added while we removed it
+                        add(entry.getKey(), entry.getValue().sumThenReset());
+                    }
+                }
+
+                inFlight = batch;
+            } finally {
+                lock.writeLock().unlock();
+            }
+
+            return batch;
+        }
+
+        // drops inFlight, after putting back into the adders what didn't make it to the DB
+        private void endFlight(Map<Long, Long> putBack) {
+
+            lock.writeLock().lock();
+
+            try {
+                putBack.forEach(this::add);
+                inFlight = Map.of();
+            } finally {
+                lock.writeLock().unlock();
+            }
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package com.yearis.blog_application.service.impl;
+
+import com.yearis.blog_application.entity.Like;
+import jakarta.persistence.EntityManager;
+import org.hibernate.engine.spi.SharedSessionContractImplementor;
+import org.hibernate.generator.BeforeExecutionGenerator;
+import org.hibernate.generator.EventType;
+import org.springframework.stereotype.Component;
+
+// ids for the likes our toggle inserts with a native INSERT IGNORE
+//
+// we ask the generator Hibernate uses for Like itself, so both kinds of inserts share its blocks of id_generators
+// and can never hand out the same id. An id of a like that turned out to be a duplicate is simply never used
+@Component
+public class LikeIdGenerator {
+
+    private final EntityManager entityManager;
+
+    public LikeIdGenerator(EntityManager entityManager) {
+        this.entityManager = entityManager;
+    }
+
+    // mostly from memory, a round trip to id_generators (in its own transaction) once every block
+    public Long next() {
+
+        SharedSessionContractImplementor session = entityManager.unwrap(SharedSessionContractImplementor.class);
+
+        BeforeExecutionGenerator generator = (BeforeExecutionGenerator) session.getFactory()
+                .getMappingMetamodel()
+                .getEntityDescriptor(Like.class)
+                .getGenerator();
+
+        return (Long) generator.generate(session, null, null, EventType.INSERT);
+    }
+}
@@ -0,0 +1,260 @@
+package com.yearis.blog_application.service.impl;
+
+import com.yearis.blog_application.exception.BlogAPIException;
+import com.yearis.blog_application.payload.response.ReconciliationResponse;
+import com.yearis.blog_application.service.LikeReconciliationService;
+import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.http.HttpStatus;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.springframework.transaction.TransactionDefinition;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Function;
+
+// posts.likes and comments.likes are copies of COUNT(*) from our likes table, and they drift
+// (e.g. deleting a user cascades its likes away but never decrements anything)
+// posts.comment_count and comments.reply_count are copies of COUNT(*) from comments, and drift the same way
+// (e.g. ON DELETE CASCADE takes the replies of a deleted comment with it without touching any counter)
+// this job walks both tables in id order, one chunk at a time, and fixes only the rows that are off
+@Service
+public class LikeReconciliationServiceImpl implements LikeReconciliationService {
+
+    private static final Logger log = LoggerFactory.getLogger(LikeReconciliationServiceImpl.class);
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate chunkTransaction;
+    private final LikeCounterBuffer likeCounterBuffer;
+
+    private final int chunkSize;
+    private final long pauseBetweenChunks;
+
+    private final Counter postsScanned;
+    private final Counter postsCorrected;
+    private final Counter commentsScanned;
+    private final Counter commentsCorrected;
+
+    private final Counter commentCountsScanned;
+    private final Counter commentCountsCorrected;
+    private final Counter replyCountsScanned;
+    private final Counter replyCountsCorrected;
+
+    // the nightly run and the admin endpoint should never run at the same time
+    private final AtomicBoolean running = new AtomicBoolean(false);
+
+    public LikeReconciliationServiceImpl(JdbcTemplate jdbcTemplate,
+                                         TransactionTemplate transactionTemplate,
+                                         LikeCounterBuffer likeCounterBuffer,
+                                         MeterRegistry meterRegistry,
+                                         @Value("${spring.likes.reconciliation.chunk-size:1000}") int chunkSize,
+                                         @Value("${spring.likes.reconciliation.pause-between-chunks:100}") long pauseBetweenChunks) {
+        this.jdbcTemplate = jdbcTemplate;
+
+        // REPEATABLE READ, so the counts of a chunk all come from the one snapshot taken right after we locked it
+        this.chunkTransaction = new TransactionTemplate(transactionTemplate.getTransactionManager());
+        this.chunkTransaction.setIsolationLevel(TransactionDefinition.ISOLATION_REPEATABLE_READ);
+        this.likeCounterBuffer = likeCounterBuffer;
+        this.chunkSize = chunkSize;
+        this.pauseBetweenChunks = pauseBetweenChunks;
+
+        this.postsScanned = meterRegistry.counter("likes.reconciliation.rows.scanned", "table", "posts");
+        this.postsCorrected = meterRegistry.counter("likes.reconciliation.rows.corrected", "table", "posts");
+        this.commentsScanned = meterRegistry.counter("likes.reconciliation.rows.scanned", "table", "comments");
+        this.commentsCorrected = meterRegistry.counter("likes.reconciliation.rows.corrected", "table", "comments");
+
+        this.commentCountsScanned = meterRegistry.counter("comments.reconciliation.rows.scanned", "table", "posts");
+        this.commentCountsCorrected = meterRegistry.counter("comments.reconciliation.rows.corrected", "table", "posts");
+        this.replyCountsScanned = meterRegistry.counter("comments.reconciliation.rows.scanned", "table", "comments");
+        this.replyCountsCorrected = meterRegistry.counter("comments.reconciliation.rows.corrected", "table", "comments");
+    }
+
+    // every night by default, we don't want this to compete with our daytime traffic
+    @Scheduled(cron = "${spring.likes.reconciliation.cron:0 0 3 * * *}")
+    public void scheduledReconciliation() {
+
+        try {
+            ReconciliationResponse result = reconcileLikes();
+            log.info("Like reconciliation done: {}", result);
+
+            result = reconcileCommentCounts();
+            log.info("Comment count reconciliation done: {}", result);
+        } catch (BlogAPIException e) {
+            log.info("Skipping the scheduled reconciliation, one is already running");
+        }
+    }
+
+    @Override
+    public ReconciliationResponse reconcileLikes() {
+
+        if (!running.compareAndSet(false, true)) {
+            throw new BlogAPIException(HttpStatus.CONFLICT, "Like reconciliation is already running");
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+
+            ReconciliationResponse response = new ReconciliationResponse();
+
+            long[] posts = reconcileTable("posts", "likes", "likes", "post_id", likeCounterBuffer::pendingPostLikes, postsScanned, postsCorrected);
+            response.setPostsScanned(posts[0]);
+            response.setPostsCorrected(posts[1]);
+
+            long[] comments = reconcileTable("comments", "likes", "likes", "comment_id", likeCounterBuffer::pendingCommentLikes, commentsScanned, commentsCorrected);
+            response.setCommentsScanned(comments[0]);
+            response.setCommentsCorrected(comments[1]);
+
+            response.setDurationMs(System.currentTimeMillis() - start);
+
+            return response;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    @Override
+    public ReconciliationResponse reconcileCommentCounts() {
+
+        if (!running.compareAndSet(false, true)) {
+            throw new BlogAPIException(HttpStatus.CONFLICT, "Reconciliation is already running");
+        }
+
+        try {
+            long start = System.currentTimeMillis();
+
+            ReconciliationResponse response = new ReconciliationResponse();
+
+            // these counters are never buffered, nothing is pending
+            long[] posts = reconcileTable("posts", "comment_count", "comments", "post_id", id -> 0L, commentCountsScanned, commentCountsCorrected);
+            response.setPostsScanned(posts[0]);
+            response.setPostsCorrected(posts[1]);
+
+            long[] comments = reconcileTable("comments", "reply_count", "comments", "parent_id", id -> 0L, replyCountsScanned, replyCountsCorrected);
+            response.setCommentsScanned(comments[0]);
+            response.setCommentsCorrected(comments[1]);
+
+            response.setDurationMs(System.currentTimeMillis() - start);
+
+            return response;
+        } finally {
+            running.set(false);
+        }
+    }
+
+    // table.counterColumn should be the number of rows in sourceTable whose sourceColumn points to it
+    // returns {rows scanned, rows corrected}
+    private long[] reconcileTable(String table, String counterColumn, String sourceTable, String sourceColumn,
+                                  Function<Long, Long> pending, Counter scannedCounter, Counter correctedCounter) {
+
+        long scanned = 0;
+        long corrected = 0;
+        long lastId = 0;
+
+        while (true) {
+
+            long after = lastId;
+
+            // one transaction per chunk: the counters are locked before we count, so a like or comment can't move
+            // a counter between the two reads (its "+1" waits for us), and the fix is written before the locks go
+            ChunkResult chunk = chunkTransaction.execute(status ->
+                    reconcileChunk(table, counterColumn, sourceTable, sourceColumn, pending, after));
+
+            if (chunk == null || chunk.rows() == 0) {
+                break;
+            }
+
+            lastId = chunk.lastId();
+
+            scanned += chunk.rows();
+            corrected += chunk.corrected();
+            scannedCounter.increment(chunk.rows());
+            correctedCounter.increment(chunk.corrected());
+
+            if (chunk.rows() < chunkSize) {
+                break;
+            }
+
+            // our rate limit, so this never hogs the database
+            if (!pause()) {
+                break;
+            }
+        }
+
+        return new long[]{scanned, corrected};
+    }
+
+    private ChunkResult reconcileChunk(String table, String counterColumn, String sourceTable, String sourceColumn,
+                                       Function<Long, Long> pending, long after) {
+
+        // 1. the next chunk of rows, by primary key so each chunk is a cheap range scan, locked until we're done with it
+        List<long[]> rows = jdbcTemplate.query(
+                "SELECT id, " + counterColumn + " FROM " + table + " WHERE id > ? ORDER BY id LIMIT ? FOR UPDATE",
+                (rs, rowNum) -> new long[]{rs.getLong(1), rs.getLong(2)},
+                after, chunkSize);
+
+        if (rows.isEmpty()) {
+            return new ChunkResult(0, 0, after);
+        }
+
+        long firstId = rows.get(0)[0];
+        long lastId = rows.get(rows.size() - 1)[0];
+
+        // 2. the real counts for the whole chunk in one grouped query
+        // (a like or comment still uncommitted here isn't counted, and its counter update is still waiting on our lock)
+        Map<Long, Long> counts = new HashMap<>();
+        jdbcTemplate.query(
+                "SELECT " + sourceColumn + ", COUNT(*) FROM " + sourceTable + " WHERE " + sourceColumn + " BETWEEN ? AND ? GROUP BY " + sourceColumn,
+                rs -> {
+                    counts.put(rs.getLong(1), rs.getLong(2));
+                },
+                firstId, lastId);
+
+        // 3. we only touch the rows that are off
+        // we apply the difference instead of setting the count, and likes still waiting in the buffered counters
+        // (a buffered flush blocked on our lock is still pending) are not counted twice
+        List<Object[]> fixes = new ArrayList<>();
+
+        for (long[] row : rows) {
+
+            long drift = counts.getOrDefault(row[0], 0L) - row[1] - pending.apply(row[0]);
+
+            if (drift != 0) {
+                fixes.add(new Object[]{drift, row[0]});
+            }
+        }
+
+        if (!fixes.isEmpty()) {
+            jdbcTemplate.batchUpdate("UPDATE " + table + " SET " + counterColumn + " = " + counterColumn + " + ?, version = version + 1, last_modified_date = NOW(6) WHERE id = ?", fixes);
+        }
+
+        return new ChunkResult(rows.size(), fixes.size(), lastId);
+    }
+
+    private record ChunkResult(int rows, int corrected, long lastId) {
+    }
+
+    private boolean pause() {
+
+        if (pauseBetweenChunks <= 0) {
+            return true;
+        }
+
+        try {
+            Thread.sleep(pauseBetweenChunks);
+            return true;
+        } catch (InterruptedException e) {
+            // the app is shutting down, the next run picks up where we are anyway
+            Thread.currentThread().interrupt();
+            return false;
+        }
+    }
+}
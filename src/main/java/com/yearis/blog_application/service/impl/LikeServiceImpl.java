@@ -1,83 +1,101 @@
 package com.yearis.blog_application.service.impl;
 
-import com.yearis.blog_application.entity.Comment;
-import com.yearis.blog_application.entity.Like;
-import com.yearis.blog_application.entity.Post;
-import com.yearis.blog_application.entity.User;
 import com.yearis.blog_application.exception.BlogAPIException;
 import com.yearis.blog_application.exception.ResourceNotFoundException;
 import com.yearis.blog_application.repository.CommentRepository;
 import com.yearis.blog_application.repository.LikeRepository;
 import com.yearis.blog_application.repository.PostRepository;
-import com.yearis.blog_application.repository.UserRepository;
+import com.yearis.blog_application.search.SuggestIndex;
+import com.yearis.blog_application.security.CurrentUser;
 import com.yearis.blog_application.service.LikeService;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
-import java.util.Objects;
-import java.util.Optional;
-
 @Service
 public class LikeServiceImpl implements LikeService {
 
     private final LikeRepository likeRepository;
-    private final UserRepository userRepository;
     private final PostRepository postRepository;
     private final CommentRepository commentRepository;
 
-    public LikeServiceImpl(LikeRepository likeRepository, UserRepository userRepository, PostRepository postRepository, CommentRepository commentRepository) {
+    // our current user, resolved at most once per request
+    private final CurrentUser currentUser;
+
+    // applies the +1/-1 on the counter, right away or buffered (spring.likes.buffered-counters.enabled)
+    private final LikeCounterBuffer likeCounterBuffer;
+
+    // post titles in the typeahead are ranked by likes
+    private final SuggestIndex suggestIndex;
+
+    // the first pages of the feed are cached with their likes
+    private final PostFeedCache postFeedCache;
+
+    // the hot and top feeds are ranked by likes
+    private final PostRanking postRanking;
+
+    // a single post is cached as JSON, likes included
+    private final PostJsonCache postJsonCache;
+
+    // the id of a like we insert ourselves
+    private final LikeIdGenerator likeIdGenerator;
+
+    public LikeServiceImpl(LikeRepository likeRepository, PostRepository postRepository, CommentRepository commentRepository, CurrentUser currentUser, LikeCounterBuffer likeCounterBuffer, SuggestIndex suggestIndex, PostFeedCache postFeedCache, PostRanking postRanking, PostJsonCache postJsonCache, LikeIdGenerator likeIdGenerator) {
         this.likeRepository = likeRepository;
-        this.userRepository = userRepository;
         this.postRepository = postRepository;
         this.commentRepository = commentRepository;
+        this.currentUser = currentUser;
+        this.likeCounterBuffer = likeCounterBuffer;
+        this.suggestIndex = suggestIndex;
+        this.postFeedCache = postFeedCache;
+        this.postRanking = postRanking;
+        this.postJsonCache = postJsonCache;
+        this.likeIdGenerator = likeIdGenerator;
     }
 
-    // to get our current user
-    private User currentUser() {
-
-        String usernameOrEmail = Objects.requireNonNull(SecurityContextHolder.getContext().getAuthentication()).getName();
-
-        return userRepository.findByUsernameOrEmail(usernameOrEmail, usernameOrEmail)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
-    }
+    // NOTE: we never load the post or comment here and never do likes = getLikes() + 1 in java.
+    // The likes row is inserted/deleted and the counter is changed with a single "likes = likes ± 1" statement
+    // in the same transaction, so concurrent toggles can't lose an update and the counter always matches the rows
+    // (in buffered counters mode the counter catches up on the next flush instead)
 
     @Override
     @Transactional
     public void toggleLikePost(Long postId) {
 
         // now to like a post 1st our current user should be there
-        User currentUser = currentUser();
-
-        // mandatory check that if the post to be liked exists or not
-        Post likedPost = postRepository.findById(postId)
-                .orElseThrow(() -> new ResourceNotFoundException("Post", "post Id", postId));
+        // we only need its id as a foreign key, so we don't load it
+        Long userId = currentUser.getId();
 
-        // then we check if the user has already liked it or not
-        Optional<Like> liked = likeRepository.findByUserAndPost(currentUser, likedPost);
+        // if the user had already liked it, deleting the row is our unlike
+        if (likeRepository.deleteByUserIdAndPostId(userId, postId) > 0) {
 
-        if (liked.isEmpty()) {
-            // it's not liked so we like it
-            Like like = new Like();
-            like.setUser(currentUser);
-            like.setPost(likedPost);
+            // decrement the likes of the post
+            likeCounterBuffer.addPostLikes(postId, -1);
+            suggestIndex.addPostLikes(postId, -1);
+            postFeedCache.addLikes(postId, -1);
+            postRanking.addLikes(postId, -1);
+            postJsonCache.invalidate(postId);
+            return;
+        }
 
-            likeRepository.save(like);
+        // it's not liked so we like it
+        // our unique constraint (user_post_like) makes sure a user can only like a post once
+        if (likeRepository.insertPostLike(likeIdGenerator.next(), userId, postId) > 0) {
 
             // increment the likes of the post
-            likedPost.setLikes(likedPost.getLikes() + 1);
-        } else {
-            // we unlike it
-            likeRepository.delete(liked.get());
-
-            // decrement the likes of the post
-            likedPost.setLikes(likedPost.getLikes() - 1);
+            likeCounterBuffer.addPostLikes(postId, 1);
+            suggestIndex.addPostLikes(postId, 1);
+            postFeedCache.addLikes(postId, 1);
+            postRanking.addLikes(postId, 1);
+            postJsonCache.invalidate(postId);
+            return;
         }
 
-        // then we save the post
-        postRepository.save(likedPost);
+        // nothing was inserted, either the post doesn't exist or a parallel request of the same user just liked it
+        if (!postRepository.existsById(postId)) {
+
+            throw new ResourceNotFoundException("Post", "post Id", postId);
+        }
     }
 
     @Override
@@ -85,44 +103,37 @@ public class LikeServiceImpl implements LikeService {
     public void toggleLikeComment(Long postId, Long commentId) {
 
         // now to like a comment 1st current user should be there
-        User currentUser = currentUser();
+        Long userId = currentUser.getId();
 
-        // mandatory check that if the post which contains comment/reply to be liked exists or not
-        Post post = postRepository.findById(postId)
-                .orElseThrow(() -> new ResourceNotFoundException("Post", "post Id", postId));
+        // we check if our comment exists in the post or not with a single primary key lookup
+        if (!commentRepository.existsByIdAndPostId(commentId, postId)) {
 
-        // mandatory check that if the comment to be liked exists or not
-        Comment likedComment = commentRepository.findById(commentId)
-                .orElseThrow(() -> new ResourceNotFoundException("Comment", "comment Id", commentId));
+            // only now we find out what exactly went wrong
+            if (!postRepository.existsById(postId)) {
+                throw new ResourceNotFoundException("Post", "post Id", postId);
+            }
 
-        // we check if our comment exists in the post or not
-        if (!likedComment.getPost().getId().equals(postId)) {
+            if (!commentRepository.existsById(commentId)) {
+                throw new ResourceNotFoundException("Comment", "comment Id", commentId);
+            }
 
             throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Comment doesn't belong to the post");
         }
 
-        // now we check if the comment has been already liked by the user or not
-        Optional<Like> liked = likeRepository.findByUserAndComment(currentUser, likedComment);
+        // if the user had already liked it, deleting the row is our unlike
+        if (likeRepository.deleteByUserIdAndCommentId(userId, commentId) > 0) {
 
-        if (liked.isEmpty()) {
-            // it's not liked so we like it
-            Like like = new Like();
-            like.setUser(currentUser);
-            like.setComment(likedComment);
+            // decrement the likes of the comment
+            likeCounterBuffer.addCommentLikes(commentId, -1);
+            return;
+        }
 
-            likeRepository.save(like);
+        // it's not liked so we like it
+        // our unique constraint (user_comment_like) makes sure a user can only like a comment once
+        if (likeRepository.insertCommentLike(likeIdGenerator.next(), userId, commentId) > 0) {
 
             // increment the likes of the comment
-            likedComment.setLikes(likedComment.getLikes() + 1);
-        } else {
-            // we unlike it
-            likeRepository.delete(liked.get());
-
-            // decrement the likes of the comment
-            likedComment.setLikes(likedComment.getLikes() - 1);
+            likeCounterBuffer.addCommentLikes(commentId, 1);
         }
-
-        // then we save the comment
-        commentRepository.save(likedComment);
     }
 }
@@ -0,0 +1,36 @@
+package com.yearis.blog_application.service.impl;
+
+import com.yearis.blog_application.exception.BlogAPIException;
+import org.springframework.http.HttpStatus;
+
+import java.nio.charset.StandardCharsets;
+import java.time.LocalDateTime;
+import java.util.Base64;
+
+// the position of the last post of a feed page: its created date and its id (for posts created at the same time)
+// the client only ever sees it as an opaque base64 string
+record PostCursor(LocalDateTime createdDate, Long id) {
+
+    String encode() {
+
+        String raw = createdDate + "|" + id;
+
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(raw.getBytes(StandardCharsets.UTF_8));
+    }
+
+    static PostCursor decode(String cursor) {
+
+        try {
+            String raw = new String(Base64.getUrlDecoder().decode(cursor), StandardCharsets.UTF_8);
+            int separator = raw.lastIndexOf('|');
+
+            return new PostCursor(
+                    LocalDateTime.parse(raw.substring(0, separator)),
+                    Long.parseLong(raw.substring(separator + 1))
+            );
+        } catch (RuntimeException e) {
+            // anything we can't read was not made by us
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Invalid cursor");
+        }
+    }
+}
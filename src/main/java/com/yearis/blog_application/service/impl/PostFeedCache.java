@@ -0,0 +1,321 @@
+package com.yearis.blog_application.service.impl;
+
+import com.yearis.blog_application.payload.response.PostResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Timer;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.IntFunction;
+import java.util.function.UnaryOperator;
+
+// most of our traffic is anonymous users on the first pages of GET /api/posts, which is the same few posts for everyone
+// so we keep the newest posts (the "window") as ready to serve responses and answer those pages from memory
+//
+// a change to a post in the window is patched into it instead of throwing the whole window away,
+// and when we do have to load it, only one request goes to the database while the others wait for its result
+@Component
+public class PostFeedCache {
+
+    private final boolean enabled;
+    private final int windowSize;
+    private final long ttl;
+
+    // what we serve, replaced as a whole on every change so a reader never sees half of an update
+    private volatile Snapshot snapshot;
+
+    // bumped by every create/update/delete, a load that saw a change while it ran doesn't install its result
+    private long generation;
+
+    // the load everyone is waiting for, null when nothing is loading
+    private CompletableFuture<Snapshot> loading;
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final Timer rebuildTimer;
+
+    public PostFeedCache(@Value("${spring.posts.feed-cache.enabled:true}") boolean enabled,
+                         @Value("${spring.posts.feed-cache.window-size:100}") int windowSize,
+                         @Value("${spring.posts.feed-cache.ttl:60000}") long ttl,
+                         MeterRegistry meterRegistry) {
+        this.enabled = enabled;
+        this.windowSize = windowSize;
+        this.ttl = ttl;
+
+        // exposed through the actuator (/actuator/metrics/posts.feed.cache.*)
+        FunctionCounter.builder("posts.feed.cache.gets", hits, LongAdder::doubleValue)
+                .tag("result", "hit")
+                .description("Feed pages answered from the cache")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("posts.feed.cache.gets", misses, LongAdder::doubleValue)
+                .tag("result", "miss")
+                .description("Feed pages that had to wait for the window to be loaded")
+                .register(meterRegistry);
+
+        Gauge.builder("posts.feed.cache.hit.ratio", this, PostFeedCache::hitRatio)
+                .description("Share of feed pages answered from the cache")
+                .register(meterRegistry);
+
+        this.rebuildTimer = Timer.builder("posts.feed.cache.rebuild")
+                .description("Time to load the window from the database")
+                .register(meterRegistry);
+    }
+
+    private record Snapshot(List<PostResponse> posts, boolean wholeFeed, long expiresAt) {
+    }
+
+    // only the first pages are cached, anything after the window goes to the database as before
+    public boolean covers(int pageNo, int pageSize) {
+
+        return enabled && pageNo >= 0 && pageSize > 0 && (long) (pageNo + 1) * pageSize <= windowSize;
+    }
+
+    // the loader returns the newest posts (at most the given count) in feed order
+    public List<PostResponse> getPage(int pageNo, int pageSize, IntFunction<List<PostResponse>> loader) {
+
+        int from = pageNo * pageSize;
+        int to = from + pageSize;
+
+        Snapshot current = snapshot;
+
+        if (current != null && current.expiresAt() > System.currentTimeMillis()
+                && (current.wholeFeed() || current.posts().size() >= to)) {
+
+            hits.increment();
+            return page(current, from, to);
+        }
+
+        misses.increment();
+
+        return page(load(loader), from, to);
+    }
+
+    /// --- Changes (applied after the transaction commits) ---
+
+    public void postCreated(PostResponse post) {
+
+        afterCommit(() -> update(true, current -> {
+
+            List<PostResponse> posts = new ArrayList<>(current.posts().size() + 1);
+            posts.add(post);
+            posts.addAll(current.posts());
+
+            // the oldest post falls out of the window, so we no longer hold the whole feed
+            if (posts.size() > windowSize) {
+                posts.remove(posts.size() - 1);
+                return new Snapshot(List.copyOf(posts), false, current.expiresAt());
+            }
+
+            return new Snapshot(List.copyOf(posts), current.wholeFeed(), current.expiresAt());
+        }));
+    }
+
+    public void postUpdated(PostResponse post) {
+
+        afterCommit(() -> update(true, current -> replace(current, post.getId(), cached -> post)));
+    }
+
+    // the window just gets shorter, once a page needs more than what's left we load it again
+    public void postRemoved(Long postId) {
+
+        afterCommit(() -> update(true, current -> {
+
+            List<PostResponse> posts = new ArrayList<>(current.posts());
+
+            if (!posts.removeIf(cached -> cached.getId().equals(postId))) {
+                return current;
+            }
+
+            return new Snapshot(List.copyOf(posts), current.wholeFeed(), current.expiresAt());
+        }));
+    }
+
+    // likes change all the time, so they don't count as a change for a load that's running.
+    // if one is missed that way, the ttl corrects it
+    public void addLikes(Long postId, int delta) {
+
+        afterCommit(() -> update(false, current -> replace(current, postId, cached -> {
+
+            PostResponse copy = copy(cached);
+            copy.setLikes(cached.getLikes() + delta);
+
+            return copy;
+        })));
+    }
+
+    // a new or deleted comment only changes the count we show, same as a like
+    public void addComments(Long postId, int delta) {
+
+        afterCommit(() -> update(false, current -> replace(current, postId, cached -> {
+
+            PostResponse copy = copy(cached);
+            copy.setCommentCount(cached.getCommentCount() + delta);
+
+            return copy;
+        })));
+    }
+
+    /// --- Internals ---
+
+    private Snapshot load(IntFunction<List<PostResponse>> loader) {
+
+        CompletableFuture<Snapshot> future;
+        long loadGeneration;
+        boolean leader = false;
+
+        synchronized (this) {
+
+            if (loading == null) {
+                loading = new CompletableFuture<>();
+                leader = true;
+            }
+
+            future = loading;
+            loadGeneration = generation;
+        }
+
+        // everyone else just waits for the one load that's running
+        if (!leader) {
+            return join(future);
+        }
+
+        try {
+            Snapshot loaded = rebuildTimer.record(() -> {
+
+                List<PostResponse> posts = loader.apply(windowSize);
+
+                return new Snapshot(List.copyOf(posts), posts.size() < windowSize, System.currentTimeMillis() + ttl);
+            });
+
+            synchronized (this) {
+
+                // a post changed while we were reading, what we read may already be outdated
+                // we still hand it to the requests waiting for it, but the next request loads again
+                if (generation == loadGeneration) {
+                    snapshot = loaded;
+                }
+
+                loading = null;
+            }
+
+            future.complete(loaded);
+
+            return loaded;
+        } catch (RuntimeException e) {
+
+            synchronized (this) {
+                loading = null;
+            }
+
+            future.completeExceptionally(e);
+
+            throw e;
+        }
+    }
+
+    private synchronized void update(boolean structural, UnaryOperator<Snapshot> change) {
+
+        if (structural) {
+            generation++;
+        }
+
+        if (snapshot != null) {
+            snapshot = change.apply(snapshot);
+        }
+    }
+
+    private static Snapshot replace(Snapshot current, Long postId, UnaryOperator<PostResponse> change) {
+
+        List<PostResponse> posts = current.posts();
+
+        for (int i = 0; i < posts.size(); i++) {
+
+            if (posts.get(i).getId().equals(postId)) {
+
+                List<PostResponse> updated = new ArrayList<>(posts);
+                updated.set(i, change.apply(posts.get(i)));
+
+                return new Snapshot(List.copyOf(updated), current.wholeFeed(), current.expiresAt());
+            }
+        }
+
+        // not in our window, nothing to do
+        return current;
+    }
+
+    private static List<PostResponse> page(Snapshot snapshot, int from, int to) {
+
+        List<PostResponse> posts = snapshot.posts();
+
+        return posts.subList(Math.min(from, posts.size()), Math.min(to, posts.size()));
+    }
+
+    // our cached responses are shared between requests, so we never change one in place
+    private static PostResponse copy(PostResponse post) {
+
+        PostResponse copy = new PostResponse();
+
+        copy.setId(post.getId());
+        copy.setTitle(post.getTitle());
+        copy.setContent(post.getContent());
+        copy.setCreatedDate(post.getCreatedDate());
+        copy.setEdited(post.isEdited());
+        copy.setLikes(post.getLikes());
+        copy.setCommentCount(post.getCommentCount());
+        copy.setAuthorId(post.getAuthorId());
+        copy.setAuthorName(post.getAuthorName());
+
+        return copy;
+    }
+
+    private static Snapshot join(CompletableFuture<Snapshot> future) {
+
+        try {
+            return future.join();
+        } catch (CompletionException e) {
+
+            // the load failed for the leader too, we fail the same way it did
+            if (e.getCause() instanceof RuntimeException cause) {
+                throw cause;
+            }
+
+            throw e;
+        }
+    }
+
+    private double hitRatio() {
+
+        double total = hits.doubleValue() + misses.doubleValue();
+
+        return total == 0 ? 0 : hits.doubleValue() / total;
+    }
+
+    private void afterCommit(Runnable action) {
+
+        if (!enabled) {
+            return;
+        }
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+}
@@ -0,0 +1,236 @@
+package com.yearis.blog_application.service.impl;
+
+import com.yearis.blog_application.payload.response.PostJsonResponse;
+import com.yearis.blog_application.payload.response.PostResponse;
+import io.micrometer.core.instrument.FunctionCounter;
+import io.micrometer.core.instrument.Gauge;
+import io.micrometer.core.instrument.MeterRegistry;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.zip.GZIPOutputStream;
+
+// GET /api/posts/{id} is our most hit endpoint, and a post rarely changes between two reads
+// so we keep every post we served as its finished JSON (and gzip'd JSON), a hit skips the DB, the mapping and Jackson
+//
+// the cache is bounded by bytes, not entries, as one long post can weigh as much as a hundred short ones
+@Component
+public class PostJsonCache {
+
+    // smaller bodies don't get smaller by compressing them
+    private static final int GZIP_MIN_SIZE = 1024;
+
+    // every post id maps to one of these stamps, an invalidation bumps it
+    private static final int STAMPS = 1024;
+
+    private final long maxBytes;
+    private final long ttl;
+    private final boolean gzipEnabled;
+
+    private final JsonMapper jsonMapper;
+
+    private final Map<Long, CachedJson> cache = new ConcurrentHashMap<>();
+    private final AtomicLong totalBytes = new AtomicLong();
+
+    // a load that saw its stamp change while it ran doesn't store what it read, it may be from before the change
+    private final AtomicLongArray stamps = new AtomicLongArray(STAMPS);
+
+    private final LongAdder hits = new LongAdder();
+    private final LongAdder misses = new LongAdder();
+    private final LongAdder evictions = new LongAdder();
+
+    public PostJsonCache(@Value("${spring.posts.json-cache.max-bytes:67108864}") long maxBytes,
+                         @Value("${spring.posts.json-cache.ttl:600000}") long ttl,
+                         @Value("${spring.posts.json-cache.gzip:true}") boolean gzipEnabled,
+                         JsonMapper jsonMapper,
+                         MeterRegistry meterRegistry) {
+        this.maxBytes = maxBytes;
+        this.ttl = ttl;
+        this.gzipEnabled = gzipEnabled;
+        this.jsonMapper = jsonMapper;
+
+        // exposed through the actuator (/actuator/metrics/posts.json-cache.*)
+        FunctionCounter.builder("posts.json-cache.gets", hits, LongAdder::doubleValue)
+                .tag("result", "hit")
+                .description("Posts served from their cached JSON")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("posts.json-cache.gets", misses, LongAdder::doubleValue)
+                .tag("result", "miss")
+                .description("Posts that had to be loaded and serialized")
+                .register(meterRegistry);
+
+        FunctionCounter.builder("posts.json-cache.evictions", evictions, LongAdder::doubleValue)
+                .description("Entries removed because the cache was over its size")
+                .register(meterRegistry);
+
+        Gauge.builder("posts.json-cache.bytes", totalBytes, AtomicLong::doubleValue)
+                .description("Bytes of JSON currently cached")
+                .register(meterRegistry);
+    }
+
+    // the loader is only called on a miss, it brings its own read-only transaction (PostService.findPostById)
+    // version is the post's current ETag when the caller knows it, an entry cached for another version is a miss
+    // (e.g. the author renamed, which changes our JSON without touching the post)
+    public PostJsonResponse get(Long postId, String version, Supplier<PostResponse> loader) {
+
+        CachedJson cached = cache.get(postId);
+        long now = System.currentTimeMillis();
+
+        if (cached != null && cached.expiresAt > now && (version == null || version.equals(cached.version))) {
+            hits.increment();
+            cached.lastAccess = now;
+            return cached.response;
+        }
+
+        misses.increment();
+
+        int stamp = stampOf(postId);
+        long stampBefore = stamps.get(stamp);
+
+        // if the post doesn't exist the loader throws, and we don't cache anything
+        PostResponse post = loader.get();
+
+        byte[] json = jsonMapper.writeValueAsBytes(post);
+        byte[] gzipped = gzipEnabled && json.length >= GZIP_MIN_SIZE ? gzip(json) : null;
+
+        PostJsonResponse response = new PostJsonResponse(json, gzipped);
+
+        CachedJson entry = new CachedJson(response, version, json.length + (gzipped != null ? gzipped.length : 0), now + ttl);
+
+        if (entry.weight <= maxBytes && stamps.get(stamp) == stampBefore) {
+
+            store(postId, entry);
+
+            // the post may have changed right between our check and our store
+            if (stamps.get(stamp) != stampBefore && cache.remove(postId, entry)) {
+                totalBytes.addAndGet(-entry.weight);
+            }
+        }
+
+        return response;
+    }
+
+    // after an edit, a delete or a like, the next read serializes the post again
+    public void invalidate(Long postId) {
+
+        // right away so nothing new gets cached from before the change, and again once it's committed
+        drop(postId);
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    drop(postId);
+                }
+            });
+        }
+    }
+
+    private void drop(Long postId) {
+
+        stamps.incrementAndGet(stampOf(postId));
+
+        CachedJson removed = cache.remove(postId);
+
+        if (removed != null) {
+            totalBytes.addAndGet(-removed.weight);
+        }
+    }
+
+    private void store(Long postId, CachedJson entry) {
+
+        CachedJson replaced = cache.put(postId, entry);
+
+        totalBytes.addAndGet(entry.weight - (replaced != null ? replaced.weight : 0));
+
+        if (totalBytes.get() > maxBytes) {
+            evict();
+        }
+    }
+
+    // we drop the least recently read entries until we are back under 90% of our size,
+    // so we don't have to do this again on the very next store
+    private synchronized void evict() {
+
+        long target = maxBytes / 10 * 9;
+
+        if (totalBytes.get() <= target) {
+            return;
+        }
+
+        // we take lastAccess once per entry, a read during the sort must not change the order under us
+        List<Candidate> candidates = new ArrayList<>(cache.size());
+        cache.forEach((postId, entry) -> candidates.add(new Candidate(postId, entry, entry.lastAccess)));
+        candidates.sort(Comparator.comparingLong(Candidate::lastAccess));
+
+        for (Candidate candidate : candidates) {
+
+            if (totalBytes.get() <= target) {
+                break;
+            }
+
+            if (cache.remove(candidate.postId(), candidate.entry())) {
+                totalBytes.addAndGet(-candidate.entry().weight);
+                evictions.increment();
+            }
+        }
+    }
+
+    private static int stampOf(Long postId) {
+
+        return (int) (postId & (STAMPS - 1));
+    }
+
+    private static byte[] gzip(byte[] json) {
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(json.length / 2);
+
+        try (GZIPOutputStream out = new GZIPOutputStream(bytes)) {
+            out.write(json);
+        } catch (IOException e) {
+            // we only write to memory, this never happens
+            throw new UncheckedIOException(e);
+        }
+
+        return bytes.toByteArray();
+    }
+
+    private record Candidate(Long postId, CachedJson entry, long lastAccess) {
+    }
+
+    private static class CachedJson {
+
+        private final PostJsonResponse response;
+        private final String version;
+        private final long weight;
+        private final long expiresAt;
+
+        // when it was last read, the least recently read entries are evicted first
+        private volatile long lastAccess;
+
+        CachedJson(PostJsonResponse response, String version, long weight, long expiresAt) {
+            this.response = response;
+            this.version = version;
+            this.weight = weight;
+            this.expiresAt = expiresAt;
+            this.lastAccess = System.currentTimeMillis();
+        }
+    }
+}
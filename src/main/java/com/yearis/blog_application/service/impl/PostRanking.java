@@ -0,0 +1,376 @@
+package com.yearis.blog_application.service.impl;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.context.event.ApplicationReadyEvent;
+import org.springframework.context.event.EventListener;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+// the "hot" and "top" orderings of our posts, kept sorted in memory so serving them never runs an ORDER BY over posts
+//
+// hot:  (likes + 2 * comments) / (age in hours + 2)^1.5, so activity pushes a post up and age pulls it down.
+//       As the age keeps changing, a background pass re-decays the scores every few minutes
+// top:  most liked first, over the posts of the last day, week or all of them
+//
+// every ordering is a skip list, so a like or a comment moves its post in O(log n)
+@Component
+public class PostRanking {
+
+    private static final Logger log = LoggerFactory.getLogger(PostRanking.class);
+
+    private static final double COMMENT_WEIGHT = 2;
+    private static final double GRAVITY = 1.5;
+
+    // a post older than this has decayed so much it's never on the hot page again
+    private static final Duration HOT_HORIZON = Duration.ofDays(7);
+
+    public enum Sort {
+        HOT, TOP
+    }
+
+    public enum Window {
+
+        DAY(Duration.ofDays(1)), WEEK(Duration.ofDays(7)), ALL(null);
+
+        private final Duration length;
+
+        Window(Duration length) {
+            this.length = length;
+        }
+
+        // the oldest post that still belongs to this window, null for all of them
+        public LocalDateTime start() {
+
+            return length == null ? null : LocalDateTime.now().minus(length);
+        }
+    }
+
+    private final JdbcTemplate jdbcTemplate;
+    private final int buildChunkSize;
+
+    // the counts behind our scores, only changed while holding our lock
+    private final Map<Long, Stats> stats = new HashMap<>();
+
+    private final Ranking hot = new Ranking();
+    private final Ranking topDay = new Ranking();
+    private final Ranking topWeek = new Ranking();
+    private final Ranking topAll = new Ranking();
+
+    private volatile boolean ready;
+
+    // posts created/deleted while we build, the build must not overwrite them with what it read before
+    private final Set<Long> touchedDuringBuild = new HashSet<>();
+
+    // likes/comments on posts the build has read but not loaded yet (its query was already running when they came),
+    // added to the post when its row is loaded
+    private final Map<Long, Stats> missedDuringBuild = new HashMap<>();
+
+    public PostRanking(JdbcTemplate jdbcTemplate,
+                       @Value("${spring.posts.ranking.build-chunk-size:1000}") int buildChunkSize) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.buildChunkSize = buildChunkSize;
+    }
+
+    // until this is true (right after startup) our callers should fall back to the database
+    public boolean isReady() {
+
+        return ready;
+    }
+
+    // the ids of one page of the ordering, best first
+    public List<Long> page(Sort sort, Window window, int pageNo, int pageSize) {
+
+        Ranking ranking = switch (sort) {
+            case HOT -> hot;
+            case TOP -> switch (window) {
+                case DAY -> topDay;
+                case WEEK -> topWeek;
+                case ALL -> topAll;
+            };
+        };
+
+        return ranking.page((long) pageNo * pageSize, pageSize);
+    }
+
+    /// --- Activity (applied after the transaction commits) ---
+
+    public void postCreated(Long postId, LocalDateTime createdDate, int likes) {
+
+        afterCommit(() -> change(postId, true, () -> {
+            stats.put(postId, new Stats(toMillis(createdDate), likes, 0));
+        }));
+    }
+
+    public void postRemoved(Long postId) {
+
+        afterCommit(() -> change(postId, true, () -> stats.remove(postId)));
+    }
+
+    public void addLikes(Long postId, int delta) {
+
+        afterCommit(() -> change(postId, false, () -> {
+            Stats current = statsOf(postId);
+            if (current != null) {
+                current.likes += delta;
+            }
+        }));
+    }
+
+    public void addComments(Long postId, int delta) {
+
+        afterCommit(() -> change(postId, false, () -> {
+            Stats current = statsOf(postId);
+            if (current != null) {
+                current.comments += delta;
+            }
+        }));
+    }
+
+    /// --- Re-decay ---
+
+    // the hot scores only get older between two passes, the order among posts of the same age never changes,
+    // so a few minutes between passes is plenty
+    @Scheduled(fixedDelayString = "${spring.posts.ranking.redecay-interval:300000}")
+    public synchronized void redecay() {
+
+        if (!ready) {
+            return;
+        }
+
+        long now = System.currentTimeMillis();
+
+        stats.forEach((postId, current) -> rank(postId, current, now));
+    }
+
+    /// --- Building on startup ---
+
+    @EventListener(ApplicationReadyEvent.class)
+    public void buildOnStartup() {
+
+        Thread builder = new Thread(this::build, "post-ranking-build");
+        builder.setDaemon(true);
+        builder.start();
+    }
+
+    private void build() {
+
+        long start = System.currentTimeMillis();
+
+        try {
+            long lastId = 0;
+
+            while (true) {
+
+                synchronized (this) {
+                    // whatever was committed before this query is in the rows it reads
+                    missedDuringBuild.clear();
+                }
+
+                List<Object[]> rows = jdbcTemplate.query(
+                        "SELECT id, created_date, likes, comment_count FROM posts WHERE id > ? ORDER BY id LIMIT ?",
+                        (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getObject(2, LocalDateTime.class), rs.getInt(3), rs.getInt(4)},
+                        lastId, buildChunkSize);
+
+                synchronized (this) {
+
+                    long now = System.currentTimeMillis();
+
+                    for (Object[] row : rows) {
+
+                        Long postId = (Long) row[0];
+
+                        if (!touchedDuringBuild.contains(postId)) {
+
+                            Stats loaded = new Stats(toMillis((LocalDateTime) row[1]), (Integer) row[2], (Integer) row[3]);
+
+                            Stats missed = missedDuringBuild.remove(postId);
+
+                            if (missed != null) {
+                                loaded.likes += missed.likes;
+                                loaded.comments += missed.comments;
+                            }
+
+                            stats.put(postId, loaded);
+                            rank(postId, loaded, now);
+                        }
+                    }
+                }
+
+                if (rows.size() < buildChunkSize) {
+                    break;
+                }
+
+                lastId = (Long) rows.get(rows.size() - 1)[0];
+            }
+
+            synchronized (this) {
+                ready = true;
+                touchedDuringBuild.clear();
+                missedDuringBuild.clear();
+            }
+
+            log.info("Post ranking built: {} posts in {} ms", stats.size(), System.currentTimeMillis() - start);
+        } catch (RuntimeException e) {
+            log.error("Could not build the post ranking, hot and top feeds fall back to the database", e);
+        }
+    }
+
+    /// --- Internals ---
+
+    // the stats of a post, or while we build and haven't loaded it yet, what we have to add to it once we do
+    private Stats statsOf(Long postId) {
+
+        Stats current = stats.get(postId);
+
+        if (current == null && !ready) {
+            return missedDuringBuild.computeIfAbsent(postId, id -> new Stats(0, 0, 0));
+        }
+
+        return current;
+    }
+
+    private synchronized void change(Long postId, boolean structural, Runnable update) {
+
+        if (structural && !ready) {
+            touchedDuringBuild.add(postId);
+        }
+
+        update.run();
+
+        Stats current = stats.get(postId);
+
+        if (current == null) {
+            hot.remove(postId);
+            topDay.remove(postId);
+            topWeek.remove(postId);
+            topAll.remove(postId);
+        } else {
+            rank(postId, current, System.currentTimeMillis());
+        }
+    }
+
+    // puts our post at its place in every ordering it belongs to
+    private void rank(Long postId, Stats current, long now) {
+
+        long age = now - current.createdAt;
+
+        hot.put(postId, age < HOT_HORIZON.toMillis() ? hotScore(current, age) : null);
+        topDay.put(postId, age < Window.DAY.length.toMillis() ? (double) current.likes : null);
+        topWeek.put(postId, age < Window.WEEK.length.toMillis() ? (double) current.likes : null);
+        topAll.put(postId, (double) current.likes);
+    }
+
+    private static double hotScore(Stats current, long age) {
+
+        double hours = age / 3_600_000.0;
+
+        return (current.likes + COMMENT_WEIGHT * current.comments) / Math.pow(Math.max(hours, 0) + 2, GRAVITY);
+    }
+
+    private static long toMillis(LocalDateTime date) {
+
+        return date == null ? System.currentTimeMillis() : date.atZone(ZoneId.systemDefault()).toInstant().toEpochMilli();
+    }
+
+    private void afterCommit(Runnable action) {
+
+        if (TransactionSynchronizationManager.isSynchronizationActive()) {
+
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    action.run();
+                }
+            });
+        } else {
+            action.run();
+        }
+    }
+
+    private static class Stats {
+
+        private final long createdAt;
+        private int likes;
+        private int comments;
+
+        Stats(long createdAt, int likes, int comments) {
+            this.createdAt = createdAt;
+            this.likes = likes;
+            this.comments = comments;
+        }
+    }
+
+    private record Entry(double score, long postId) {
+    }
+
+    // one ordering: the entries sorted by score (best first, newer post first on a tie) plus where each post is in it
+    // changed under the lock of PostRanking, read without any lock
+    private static class Ranking {
+
+        private final ConcurrentSkipListSet<Entry> entries = new ConcurrentSkipListSet<>(
+                Comparator.comparingDouble(Entry::score).reversed().thenComparing(Entry::postId, Comparator.reverseOrder()));
+
+        private final Map<Long, Entry> byPostId = new HashMap<>();
+
+        // a null score takes the post out of this ordering
+        void put(Long postId, Double score) {
+
+            Entry old = byPostId.get(postId);
+
+            if (old != null && score != null && old.score() == score) {
+                return;
+            }
+
+            remove(postId);
+
+            if (score != null) {
+                Entry entry = new Entry(score, postId);
+                entries.add(entry);
+                byPostId.put(postId, entry);
+            }
+        }
+
+        void remove(Long postId) {
+
+            Entry old = byPostId.remove(postId);
+
+            if (old != null) {
+                entries.remove(old);
+            }
+        }
+
+        List<Long> page(long offset, int size) {
+
+            List<Long> page = new ArrayList<>(size);
+            Iterator<Entry> iterator = entries.iterator();
+
+            for (long skipped = 0; skipped < offset && iterator.hasNext(); skipped++) {
+                iterator.next();
+            }
+
+            while (page.size() < size && iterator.hasNext()) {
+                page.add(iterator.next().postId());
+            }
+
+            return page;
+        }
+    }
+}
@@ -6,50 +6,101 @@ import com.yearis.blog_application.entity.User;
 import com.yearis.blog_application.exception.BlogAPIException;
 import com.yearis.blog_application.exception.ResourceNotFoundException;
 import com.yearis.blog_application.payload.request.PostRequest;
+import com.yearis.blog_application.payload.response.CursorPageResponse;
+import com.yearis.blog_application.payload.response.PostBatchResponse;
+import com.yearis.blog_application.payload.response.PostJsonResponse;
 import com.yearis.blog_application.payload.response.PostResponse;
+import com.yearis.blog_application.payload.response.PostSummaryResponse;
+import com.yearis.blog_application.payload.response.PostViewsResponse;
+import com.yearis.blog_application.payload.response.ResourceVersion;
+import com.yearis.blog_application.payload.response.SuggestionResponse;
 import com.yearis.blog_application.repository.CommentRepository;
 import com.yearis.blog_application.repository.LikeRepository;
 import com.yearis.blog_application.repository.PostRepository;
-import com.yearis.blog_application.repository.UserRepository;
+import com.yearis.blog_application.search.PostSearchIndex;
+import com.yearis.blog_application.search.SuggestIndex;
+import com.yearis.blog_application.security.CurrentUser;
 import com.yearis.blog_application.service.PostService;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
+import org.springframework.transaction.annotation.Propagation;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Lazy;
+import org.springframework.data.domain.Limit;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Slice;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
 
 import org.springframework.data.domain.Pageable;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Optional;
+import java.util.Set;
 import java.util.stream.Collectors;
 
 @Service
 @Transactional(readOnly = true)
 public class PostServiceImpl implements PostService {
 
+    // a typeahead dropdown never shows more than this
+    private static final int MAX_SUGGESTIONS = 20;
+
+    // the most posts one batch request can ask for
+    private final int maxBatchSize;
+
     private final PostRepository postRepository;
-    private final UserRepository userRepository;
     private final CommentRepository commentRepository;
     private final LikeRepository likeRepository;
 
+    // our current user, resolved at most once per request
+    private final CurrentUser currentUser;
+
+    private final LikeCounterBuffer likeCounterBuffer;
+
+    // our in-memory full text index, we keep it in sync on every create/update/delete
+    private final PostSearchIndex postSearchIndex;
+    private final SuggestIndex suggestIndex;
+
+    // the first pages of findAllPosts, served from memory
+    private final PostFeedCache postFeedCache;
+
+    // the hot and top orderings, kept sorted in memory
+    private final PostRanking postRanking;
+
+    // the serialized JSON of single posts
+    private final PostJsonCache postJsonCache;
+
+    // the views of our posts, counted in memory and flushed in the background
+    private final PostViewCounter postViewCounter;
+
+    // ourselves through the Spring proxy, so a method we call on it still gets its @Transactional (and the replica)
+    private final PostService self;
+
     @Autowired
-    public PostServiceImpl(PostRepository postRepository, UserRepository userRepository, CommentRepository commentRepository, LikeRepository likeRepository) {
+    public PostServiceImpl(PostRepository postRepository, CommentRepository commentRepository, LikeRepository likeRepository, CurrentUser currentUser, LikeCounterBuffer likeCounterBuffer, PostSearchIndex postSearchIndex, SuggestIndex suggestIndex, PostFeedCache postFeedCache, PostRanking postRanking, PostJsonCache postJsonCache, PostViewCounter postViewCounter,
+                           @Lazy PostService self,
+                           @Value("${spring.posts.batch.max-size:100}") int maxBatchSize) {
         this.postRepository = postRepository;
-        this.userRepository = userRepository;
         this.commentRepository = commentRepository;
         this.likeRepository = likeRepository;
-    }
-
-    // get our current user
-    private User currentUser() {
-
-        String usernameOrEmail = Objects.requireNonNull(SecurityContextHolder.getContext().getAuthentication()).getName();
-
-        return userRepository.findByUsernameOrEmail(usernameOrEmail, usernameOrEmail).orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        this.currentUser = currentUser;
+        this.likeCounterBuffer = likeCounterBuffer;
+        this.postSearchIndex = postSearchIndex;
+        this.suggestIndex = suggestIndex;
+        this.postFeedCache = postFeedCache;
+        this.postRanking = postRanking;
+        this.postJsonCache = postJsonCache;
+        this.postViewCounter = postViewCounter;
+        this.self = self;
+        this.maxBatchSize = maxBatchSize;
     }
 
     /// --- Mappers ---
@@ -65,7 +116,9 @@ public class PostServiceImpl implements PostService {
         response.setContent(post.getContent());
         response.setCreatedDate(post.getCreatedDate());
         response.setEdited(post.isEdited());
-        response.setLikes(post.getLikes());
+        // we add the likes that are still buffered, so a user sees their own like right away
+        response.setLikes(post.getLikes() + (int) likeCounterBuffer.pendingPostLikes(post.getId()));
+        response.setCommentCount(post.getCommentCount());
 
         if (post.getAuthor() != null) {
             response.setAuthorId(post.getAuthor().getId());
@@ -85,6 +138,32 @@ public class PostServiceImpl implements PostService {
         return response;
     }
 
+    // Converts Summary Projection -> Summary Response DTO
+    private PostSummaryResponse mapToSummary(PostRepository.PostSummaryView post) {
+
+        PostSummaryResponse response = new PostSummaryResponse();
+
+        response.setId(post.getId());
+        response.setTitle(post.getTitle());
+        response.setExcerpt(post.getExcerpt());
+        response.setCreatedDate(post.getCreatedDate());
+        response.setEdited(post.isEdited());
+        response.setLikes(post.getLikes() + (int) likeCounterBuffer.pendingPostLikes(post.getId()));
+
+        // same Reddit Style Handling as in mapToResponse, the excerpt is long enough to hold our markers
+        response.setAuthorId(post.getAuthorId());
+
+        if (post.getAuthorId() != null) {
+            response.setAuthorName(post.getAuthorName());
+        } else if ("[deleted by user]".equals(post.getExcerpt()) || "[removed by admin]".equals(post.getExcerpt())) {
+            response.setAuthorName("[removed]");
+        } else {
+            response.setAuthorName("[deleted]");
+        }
+
+        return response;
+    }
+
     // Convert Request DTO -> Entity
     private Post mapToEntity(PostRequest request) {
 
@@ -109,19 +188,30 @@ public class PostServiceImpl implements PostService {
         Post post = mapToEntity(postRequest);
 
         // now we link the user to the post
-        post.setAuthor(currentUser());
+        // we load our user once as the response needs the username
+        User author = currentUser.get();
+        post.setAuthor(author);
 
         // we save our post to database
-        Post newPost = postRepository.save(post);
+        // our ids come from the table generator, so save() alone doesn't INSERT anymore, and @CreationTimestamp is only
+        // filled in by the INSERT. We flush it now, the response, the feed cache and the ranking all need createdDate
+        Post newPost = postRepository.saveAndFlush(post);
 
         Like firstLike = new Like();
-        firstLike.setUser(currentUser());
+        firstLike.setUser(author);
         firstLike.setPost(newPost);
         // and we don't set the comment as this like is only for post
 
         likeRepository.save(firstLike);
 
-        return mapToResponse(newPost);
+        postSearchIndex.indexPost(newPost.getId(), newPost.getTitle(), newPost.getContent());
+        suggestIndex.indexPost(newPost.getId(), newPost.getTitle(), newPost.getLikes());
+
+        PostResponse response = mapToResponse(newPost);
+        postFeedCache.postCreated(response);
+        postRanking.postCreated(newPost.getId(), newPost.getCreatedDate(), newPost.getLikes());
+
+        return response;
     }
 
     /// R: Read/Find/Get
@@ -138,16 +228,93 @@ public class PostServiceImpl implements PostService {
         return mapToResponse(post);
     }
 
+    // one IN query for the whole batch instead of one findById (and one transaction) per post
+    @Override
+    @Transactional(readOnly = true)
+    public PostBatchResponse findPostsByIds(List<Long> ids) {
+
+        if (ids == null || ids.isEmpty()) {
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Ids cannot be empty");
+        }
+
+        if (ids.size() > maxBatchSize) {
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "A batch can have at most " + maxBatchSize + " ids");
+        }
+
+        // every id once, in the order it was first asked for
+        Set<Long> requested = new LinkedHashSet<>(ids);
+        requested.remove(null);
+
+        Map<Long, Post> found = postRepository.findAllWithAuthorByIdIn(requested).stream()
+                .collect(Collectors.toMap(Post::getId, post -> post));
+
+        List<PostResponse> posts = new ArrayList<>(found.size());
+        List<Long> missingIds = new ArrayList<>();
+
+        for (Long id : requested) {
+
+            Post post = found.get(id);
+
+            if (post != null) {
+                posts.add(mapToResponse(post));
+            } else {
+                missingIds.add(id);
+            }
+        }
+
+        return new PostBatchResponse(posts, missingIds);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public Optional<ResourceVersion> findPostVersion(Long id) {
+
+        return postRepository.findVersionById(id)
+                .map(version -> new ResourceVersion(
+                        "\"" + version.getVersion() + "." + (version.getAuthorVersion() != null ? version.getAuthorVersion() : -1) + "\"",
+                        version.getLastModifiedDate()));
+    }
+
+    // no transaction here, a cache hit shouldn't even take a DB connection
+    // on a miss we load through our proxy, so findPostById gets its read-only transaction (and the replica) as always
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public PostJsonResponse findPostJsonById(Long id, String version) {
+
+        return postJsonCache.get(id, version, () -> self.findPostById(id));
+    }
+
+    // no transaction either, a view is only counted in memory
+    @Override
+    @Transactional(propagation = Propagation.NOT_SUPPORTED)
+    public void recordView(Long id, Long userId, String remoteAddress) {
+
+        postViewCounter.record(id, userId, remoteAddress);
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public PostViewsResponse findPostViews(Long id) {
+
+        if (!postRepository.existsById(id)) {
+            throw new ResourceNotFoundException("Post", "post Id", id);
+        }
+
+        PostViewCounter.ViewStats stats = postViewCounter.stats(id);
+
+        return new PostViewsResponse(id, stats.views(), stats.uniqueViewers());
+    }
+
     // finding a post by its Title
     @Override
     @Transactional(readOnly = true)
     public List<PostResponse> findPostByTitle(String title, int pageNo, int pageSize) {
 
-        Sort sort = Sort.by("createdDate").descending();
+        Sort sort = Sort.by("createdDate").descending().and(Sort.by("id").descending());
 
         Pageable pageable = PageRequest.of(pageNo, pageSize, sort);
 
-        Page<Post> posts = postRepository.findByTitleContaining(title, pageable);
+        Slice<Post> posts = postRepository.findByTitleContaining(title, pageable);
 
         return posts.stream()
                 .map(post -> mapToResponse(post))
@@ -160,11 +327,17 @@ public class PostServiceImpl implements PostService {
     @Transactional(readOnly = true)
     public List<PostResponse> findAllPosts(int pageNo, int pageSize) {
 
-        Sort sort = Sort.by("createdDate").descending();
+        // the first pages are the same for everyone, so they come from our feed cache
+        if (postFeedCache.covers(pageNo, pageSize)) {
+            return postFeedCache.getPage(pageNo, pageSize, this::loadNewestPosts);
+        }
+
+        Sort sort = Sort.by("createdDate").descending().and(Sort.by("id").descending());
 
         Pageable pageable = PageRequest.of(pageNo, pageSize, sort);
 
-        Page<Post> postPage = postRepository.findAll(pageable);
+        // a Slice doesn't run the COUNT(*) query a Page would, we never use the total anyway
+        Slice<Post> postPage = postRepository.findAllBy(pageable);
 
         List<Post> posts = postPage.getContent();
 
@@ -173,6 +346,195 @@ public class PostServiceImpl implements PostService {
                 .collect(Collectors.toList());
     }
 
+    // what our feed cache holds: the newest posts, in the same order as findAllPosts
+    private List<PostResponse> loadNewestPosts(int count) {
+
+        Sort sort = Sort.by("createdDate").descending().and(Sort.by("id").descending());
+
+        return postRepository.findAllBy(PageRequest.of(0, count, sort)).stream()
+                .map(post -> mapToResponse(post))
+                .collect(Collectors.toList());
+    }
+
+    // the ordering comes from our in-memory ranking, we only load the posts of the page we serve
+    @Override
+    @Transactional(readOnly = true)
+    public List<PostResponse> findRankedPosts(String sort, String window, int pageNo, int pageSize) {
+
+        if (pageNo < 0 || pageSize < 1) {
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Invalid page number or page size");
+        }
+
+        PostRanking.Sort rankedSort;
+        PostRanking.Window rankedWindow;
+
+        try {
+            rankedSort = PostRanking.Sort.valueOf(sort.toUpperCase(Locale.ROOT));
+            rankedWindow = PostRanking.Window.valueOf(window.toUpperCase(Locale.ROOT));
+        } catch (IllegalArgumentException e) {
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Sort must be hot or top, window must be day, week or all");
+        }
+
+        // right after startup the ranking is still being built, so we ask the database for the most liked posts instead
+        if (!postRanking.isReady()) {
+
+            LocalDateTime since = rankedSort == PostRanking.Sort.HOT
+                    ? PostRanking.Window.WEEK.start()
+                    : rankedWindow.start();
+
+            Pageable pageable = PageRequest.of(pageNo, pageSize, Sort.by("likes").descending().and(Sort.by("id").descending()));
+
+            Slice<Post> posts = since == null
+                    ? postRepository.findAllBy(pageable)
+                    : postRepository.findByCreatedDateAfter(since, pageable);
+
+            return posts.stream()
+                    .map(post -> mapToResponse(post))
+                    .collect(Collectors.toList());
+        }
+
+        List<Long> ids = postRanking.page(rankedSort, rankedWindow, pageNo, pageSize);
+
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        // one query for the whole page, then back into the ranking order
+        Map<Long, Post> posts = postRepository.findAllWithAuthorByIdIn(ids).stream()
+                .collect(Collectors.toMap(Post::getId, post -> post));
+
+        return ids.stream()
+                .map(posts::get)
+                .filter(Objects::nonNull)
+                .map(post -> mapToResponse(post))
+                .collect(Collectors.toList());
+    }
+
+    // full text search over title and content, every word has to match and the best matches come first
+    @Override
+    @Transactional(readOnly = true)
+    public List<PostResponse> searchPosts(String query, int pageNo, int pageSize) {
+
+        if (pageNo < 0 || pageSize < 1) {
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Invalid page number or page size");
+        }
+
+        // right after startup the index is still being built, so we fall back to our title search
+        if (!postSearchIndex.isReady()) {
+            return findPostByTitle(query, pageNo, pageSize);
+        }
+
+        List<Long> ids = postSearchIndex.search(query, pageNo, pageSize);
+
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+
+        // we load the whole page in one query, then put the posts back in the ranking order
+        Map<Long, Post> posts = postRepository.findAllWithAuthorByIdIn(ids).stream()
+                .collect(Collectors.toMap(Post::getId, post -> post));
+
+        return ids.stream()
+                .map(posts::get)
+                .filter(Objects::nonNull)
+                .map(post -> mapToResponse(post))
+                .collect(Collectors.toList());
+    }
+
+    // answered from memory, the search box calls this on every keystroke
+    @Override
+    public List<SuggestionResponse> suggestPosts(String prefix, int limit) {
+
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + MAX_SUGGESTIONS);
+        }
+
+        return suggestIndex.suggestPosts(prefix, limit).stream()
+                .map(suggestion -> new SuggestionResponse(suggestion.id(), suggestion.text()))
+                .toList();
+    }
+
+    /// R: Read/Find/Get (summaries)
+
+    // same lists as above, but only with the columns a list needs
+    @Override
+    @Transactional(readOnly = true)
+    public List<PostSummaryResponse> findAllPostSummaries(int pageNo, int pageSize) {
+
+        Pageable pageable = PageRequest.of(pageNo, pageSize, Sort.by("createdDate").descending().and(Sort.by("id").descending()));
+
+        return postRepository.findAllSummaries(pageable).stream()
+                .map(post -> mapToSummary(post))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PostSummaryResponse> findPostSummariesByTitle(String title, int pageNo, int pageSize) {
+
+        Pageable pageable = PageRequest.of(pageNo, pageSize, Sort.by("createdDate").descending().and(Sort.by("id").descending()));
+
+        return postRepository.findSummariesByTitleContaining(title, pageable).stream()
+                .map(post -> mapToSummary(post))
+                .collect(Collectors.toList());
+    }
+
+    @Override
+    @Transactional(readOnly = true)
+    public List<PostSummaryResponse> findPostSummariesByUserId(Long userId, int pageNo, int pageSize) {
+
+        Pageable pageable = PageRequest.of(pageNo, pageSize, Sort.by("createdDate").descending().and(Sort.by("id").descending()));
+
+        return postRepository.findSummariesByAuthorId(userId, pageable).stream()
+                .map(post -> mapToSummary(post))
+                .collect(Collectors.toList());
+    }
+
+    // the cursor version of findAllPosts/findPostByUserId, for infinite scrolling
+    // the cursor is where the last page ended, so we seek there instead of skipping pageNo * pageSize rows
+    @Override
+    @Transactional(readOnly = true)
+    public CursorPageResponse<PostResponse> findPostFeed(Long userId, String cursor, int pageSize) {
+
+        if (pageSize < 1) {
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Page size must be at least 1");
+        }
+
+        // we ask for 1 more post than needed, if we get it there is a next page
+        Limit limit = Limit.of(pageSize + 1);
+
+        List<Post> posts;
+
+        if (cursor == null || cursor.isBlank()) {
+
+            posts = userId == null
+                    ? postRepository.findFeed(limit)
+                    : postRepository.findFeedByAuthorId(userId, limit);
+        } else {
+
+            PostCursor after = PostCursor.decode(cursor);
+
+            posts = userId == null
+                    ? postRepository.findFeedAfter(after.createdDate(), after.id(), limit)
+                    : postRepository.findFeedByAuthorIdAfter(userId, after.createdDate(), after.id(), limit);
+        }
+
+        String nextCursor = null;
+
+        if (posts.size() > pageSize) {
+            posts = posts.subList(0, pageSize);
+
+            Post last = posts.get(pageSize - 1);
+            nextCursor = new PostCursor(last.getCreatedDate(), last.getId()).encode();
+        }
+
+        List<PostResponse> content = posts.stream()
+                .map(post -> mapToResponse(post))
+                .collect(Collectors.toList());
+
+        return new CursorPageResponse<>(content, nextCursor);
+    }
+
     /// U: Update
 
     // update an already existing post
@@ -186,11 +548,9 @@ public class PostServiceImpl implements PostService {
                 .orElseThrow(() -> new ResourceNotFoundException("Post", "post Id", id));
 
         // now we check that does user even has authority to update post
-        User currentUser = currentUser();
-
         User owner = post.getAuthor();
 
-        if (!currentUser.equals(owner)) {
+        if (!currentUser.is(owner)) {
 
             throw new BlogAPIException(HttpStatus.UNAUTHORIZED, "Unauthorized Access!");
         }
@@ -203,7 +563,14 @@ public class PostServiceImpl implements PostService {
         // save/update the new post
         Post updatedPost = postRepository.save(post);
 
-        return mapToResponse(updatedPost);
+        postSearchIndex.indexPost(updatedPost.getId(), updatedPost.getTitle(), updatedPost.getContent());
+        suggestIndex.indexPost(updatedPost.getId(), updatedPost.getTitle(), updatedPost.getLikes() + likeCounterBuffer.pendingPostLikes(updatedPost.getId()));
+
+        PostResponse response = mapToResponse(updatedPost);
+        postFeedCache.postUpdated(response);
+        postJsonCache.invalidate(updatedPost.getId());
+
+        return response;
     }
 
     /// D: Delete
@@ -218,11 +585,10 @@ public class PostServiceImpl implements PostService {
         Post post = postRepository.findById(id)
             .orElseThrow(() -> new ResourceNotFoundException("Post", "post Id", id));
 
-        User currentUser = currentUser();
         User owner = post.getAuthor();
 
-        boolean isOwner = currentUser.equals(owner);
-        boolean isAdmin = currentUser.getRoles().stream().anyMatch(role -> role.getName().equals("ROLE_ADMIN"));
+        boolean isOwner = currentUser.is(owner);
+        boolean isAdmin = currentUser.isAdmin();
 
         // as an admin should be allowed to delete inappropriate posts
         if (!isOwner && !isAdmin) {
@@ -231,8 +597,9 @@ public class PostServiceImpl implements PostService {
         }
 
         // now we need it so that when post is deleted it doesn't collapse the comments
-        // check if any comments in the list
-        boolean hasComments = commentRepository.existsByPostId(id);
+        // our comment counter tells us without a query, but a 0 we confirm first:
+        // the counter can be behind until the reconciliation job fixes it, and a hard delete cascades the comments away
+        boolean hasComments = post.getCommentCount() > 0 || commentRepository.existsByPostId(id);
         if (hasComments) {
 
             if (isAdmin && !isOwner) {
@@ -244,9 +611,20 @@ public class PostServiceImpl implements PostService {
             post.setAuthor(null);
             post.setEdited(true);
             postRepository.save(post);
+
+            // the post stays, but its content is gone
+            postSearchIndex.indexPost(post.getId(), post.getTitle(), post.getContent());
+            postFeedCache.postUpdated(mapToResponse(post));
+            postJsonCache.invalidate(id);
         } else {
 
             postRepository.delete(post);
+
+            postSearchIndex.removePost(id);
+            suggestIndex.removePost(id);
+            postFeedCache.postRemoved(id);
+            postRanking.postRemoved(id);
+            postJsonCache.invalidate(id);
         }
     }
 
@@ -261,12 +639,12 @@ public class PostServiceImpl implements PostService {
         // the user doesn't even have to be logged in for this method
 
         // sorting and breaking the posts into pages
-        Sort sort = Sort.by("createdDate").descending();
+        Sort sort = Sort.by("createdDate").descending().and(Sort.by("id").descending());
 
         Pageable pageable = PageRequest.of(pageNo, pageSize, sort);
 
         // now we find the posts created by our currentUser
-        Page<Post> userPosts = postRepository.findByAuthorId(userId, pageable);
+        Slice<Post> userPosts = postRepository.findByAuthorId(userId, pageable);
 
         return userPosts.stream()
                 .map(post -> mapToResponse(post))
@@ -277,9 +655,6 @@ public class PostServiceImpl implements PostService {
     @Transactional(readOnly = true)
     public List<PostResponse> findLikedPostsByUserId(Long userId, int pageNo, int pageSize) {
 
-        // get current user
-        User currentUser = currentUser();
-
         // here we check if our current user's id is same as what's being passed in the methods
         if (!currentUser.getId().equals(userId)) {
 
@@ -0,0 +1,325 @@
+package com.yearis.blog_application.service.impl;
+
+import jakarta.annotation.PreDestroy;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
+
+// how often our posts are read, and by how many different people
+//
+// a read only bumps a LongAdder and a HyperLogLog sketch of its viewers (user id, or a hash of the IP for anonymous reads),
+// both in memory, so counting views adds no SQL to GET /api/posts/{id}.
+// Every few seconds we write what was counted to post_views, in chunks of posts with one transaction of a few JDBC batches each
+//
+// every instance of the app counts its own reads, so a flush locks the stored rows and merges their sketches
+// into ours before writing them back, a sketch written by another instance in between is never overwritten
+@Component
+public class PostViewCounter {
+
+    private static final Logger log = LoggerFactory.getLogger(PostViewCounter.class);
+
+    // 2^10 registers of one byte, so a sketch is 1 KB per post and estimates within ~3%
+    private static final int PRECISION = 10;
+    private static final int REGISTERS = 1 << PRECISION;
+    private static final double ALPHA = 0.7213 / (1 + 1.079 / REGISTERS);
+
+    // so a user id and an address that happen to hash alike are still two viewers
+    private static final long USER_SEED = 0x9E3779B97F4A7C15L;
+    private static final long ADDRESS_SEED = 0xC2B2AE3D27D4EB4FL;
+
+    // a row for every post that has none yet, so there is one to lock. Selecting from posts skips posts deleted
+    // since they were read (their foreign key is gone), the IGNORE a row another instance inserted at the same time
+    private static final String INSERT_SQL =
+            "INSERT IGNORE INTO post_views (post_id, views) SELECT id, 0 FROM posts WHERE id = ?";
+
+    // the sketch we write is the stored one merged into ours (register-wise max) while its row was locked
+    private static final String UPDATE_SQL =
+            "UPDATE post_views SET views = views + ?, viewers = ?, last_viewed_date = NOW(6) WHERE post_id = ?";
+
+    private final boolean enabled;
+
+    // posts per transaction. Our SELECT ... FOR UPDATE has a placeholder per post, and MySQL takes at most 65,535 in one statement
+    private final int chunkSize;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+
+    // only the posts read since the last flush (or the one before), an idle post is dropped from memory
+    private final Map<Long, PostViews> views = new ConcurrentHashMap<>();
+
+    public PostViewCounter(@Value("${spring.posts.views.enabled:true}") boolean enabled,
+                           @Value("${spring.posts.views.flush-chunk-size:500}") int chunkSize,
+                           JdbcTemplate jdbcTemplate,
+                           TransactionTemplate transactionTemplate) {
+        this.enabled = enabled;
+        this.chunkSize = chunkSize;
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+    }
+
+    public record ViewStats(long views, long uniqueViewers) {
+    }
+
+    // userId is null for anonymous reads, then the address is what tells two viewers apart.
+    // We never keep the address (or its hash), a sketch only remembers the longest run of zeros per register
+    public void record(Long postId, Long userId, String remoteAddress) {
+
+        if (!enabled) {
+            return;
+        }
+
+        long viewer = userId != null ? hashUser(userId) : hashAddress(remoteAddress);
+
+        // get first, computeIfAbsent locks its bin even when the post is already there
+        PostViews postViews = views.get(postId);
+
+        if (postViews == null) {
+            postViews = views.computeIfAbsent(postId, id -> new PostViews());
+        }
+
+        postViews.count.increment();
+        postViews.sketch.offer(viewer);
+
+        // the flush may have dropped this entry while we were counting into it, we hand our view over to the new one
+        if (views.get(postId) != postViews) {
+            absorb(postId, postViews);
+        }
+    }
+
+    // what's stored plus what's still waiting for the next flush
+    public ViewStats stats(Long postId) {
+
+        Sketch merged = new Sketch();
+        long total = 0;
+
+        List<Object[]> rows = jdbcTemplate.query("SELECT views, viewers FROM post_views WHERE post_id = ?",
+                (rs, rowNum) -> new Object[]{rs.getLong(1), rs.getBytes(2)}, postId);
+
+        if (!rows.isEmpty()) {
+            total += (Long) rows.get(0)[0];
+            merged.merge((byte[]) rows.get(0)[1]);
+        }
+
+        PostViews pending = views.get(postId);
+
+        if (pending != null) {
+            total += pending.count.sum();
+            merged.merge(pending.sketch.registers);
+        }
+
+        return new ViewStats(total, Math.min(merged.estimate(), total));
+    }
+
+    /// --- Flushing ---
+
+    @Scheduled(fixedDelayString = "${spring.posts.views.flush-interval:10000}")
+    public synchronized void flush() {
+
+        if (!enabled) {
+            return;
+        }
+
+        List<Pending> batch = new ArrayList<>();
+
+        for (Map.Entry<Long, PostViews> entry : views.entrySet()) {
+
+            PostViews postViews = entry.getValue();
+            long delta = postViews.count.sumThenReset();
+
+            if (delta != 0) {
+                batch.add(new Pending(entry.getKey(), postViews, delta));
+            } else if (views.remove(entry.getKey(), postViews) && postViews.count.sum() != 0) {
+                // nobody read this post since its sketch was written, so we let it go.
+                // A view that landed right while we removed it goes to a new entry
+                absorb(entry.getKey(), postViews);
+            }
+        }
+
+        if (batch.isEmpty()) {
+            return;
+        }
+
+        // in the same order on every instance, two flushes can then wait for each other but never deadlock
+        batch.sort(Comparator.comparing(Pending::postId));
+
+        for (int from = 0; from < batch.size(); from += chunkSize) {
+
+            List<Pending> chunk = batch.subList(from, Math.min(from + chunkSize, batch.size()));
+
+            try {
+                transactionTemplate.executeWithoutResult(status -> write(chunk));
+            } catch (RuntimeException e) {
+                // we put the views of this chunk back so the next flush tries again, the other chunks are written on their own
+                log.warn("Could not flush the views of {} posts, retrying on the next flush", chunk.size(), e);
+                chunk.forEach(pending -> pending.postViews().count.add(pending.delta()));
+            }
+        }
+    }
+
+    // we don't want to lose the pending views when the app stops
+    @PreDestroy
+    public void flushOnShutdown() {
+
+        flush();
+    }
+
+    // three round trips per chunk: make sure the rows exist, lock and read them, write them back.
+    // Another instance flushing the same posts waits on our locks and then merges what we wrote
+    private void write(List<Pending> batch) {
+
+        List<Object[]> ids = new ArrayList<>(batch.size());
+        batch.forEach(pending -> ids.add(new Object[]{pending.postId()}));
+
+        jdbcTemplate.batchUpdate(INSERT_SQL, ids);
+
+        Map<Long, PostViews> byPostId = new HashMap<>();
+        batch.forEach(pending -> byPostId.put(pending.postId(), pending.postViews()));
+
+        // the stored sketch knows the viewers the other instances (and we before a restart) counted, ours only our own
+        jdbcTemplate.query(
+                "SELECT post_id, viewers FROM post_views WHERE post_id IN (" + String.join(", ", Collections.nCopies(batch.size(), "?")) + ") FOR UPDATE",
+                rs -> {
+                    byPostId.get(rs.getLong(1)).sketch.merge(rs.getBytes(2));
+                },
+                byPostId.keySet().toArray());
+
+        List<Object[]> args = new ArrayList<>(batch.size());
+        batch.forEach(pending -> args.add(new Object[]{pending.delta(), pending.postViews().sketch.toBytes(), pending.postId()}));
+
+        jdbcTemplate.batchUpdate(UPDATE_SQL, args);
+    }
+
+    /// --- Internals ---
+
+    private void absorb(Long postId, PostViews orphan) {
+
+        PostViews current = views.computeIfAbsent(postId, id -> new PostViews());
+
+        current.count.add(orphan.count.sumThenReset());
+        current.sketch.merge(orphan.sketch.registers);
+    }
+
+    private static long hashUser(long userId) {
+
+        return mix(userId ^ USER_SEED);
+    }
+
+    // FNV-1a over the chars, so hashing an address doesn't allocate
+    private static long hashAddress(String address) {
+
+        long hash = 0xCBF29CE484222325L;
+
+        if (address != null) {
+            for (int i = 0; i < address.length(); i++) {
+                hash ^= address.charAt(i);
+                hash *= 0x100000001B3L;
+            }
+        }
+
+        return mix(hash ^ ADDRESS_SEED);
+    }
+
+    // spreads the bits, the sketch needs every bit of the hash to look random
+    private static long mix(long z) {
+
+        z = (z ^ (z >>> 30)) * 0xBF58476D1CE4E5B9L;
+        z = (z ^ (z >>> 27)) * 0x94D049BB133111EBL;
+
+        return z ^ (z >>> 31);
+    }
+
+    private record Pending(Long postId, PostViews postViews, long delta) {
+    }
+
+    private static class PostViews {
+
+        private final LongAdder count = new LongAdder();
+        private final Sketch sketch = new Sketch();
+    }
+
+    // a HyperLogLog: the top bits of a viewer's hash pick a register, which keeps the longest run of leading zeros
+    // seen in the rest. The more viewers, the longer the runs, so the registers tell how many there were
+    private static class Sketch {
+
+        // a compare-and-set per register, so two viewers counted at the same time can't undo each other
+        private static final VarHandle REGISTER = MethodHandles.arrayElementVarHandle(byte[].class);
+
+        private final byte[] registers = new byte[REGISTERS];
+
+        void offer(long hash) {
+
+            int index = (int) (hash >>> (64 - PRECISION));
+
+            // the low bit we set caps the rank when the rest of the hash is all zeros
+            int rank = Long.numberOfLeadingZeros((hash << PRECISION) | (1L << (PRECISION - 1))) + 1;
+
+            raise(index, (byte) rank);
+        }
+
+        void merge(byte[] other) {
+
+            // a sketch of another size (or a broken row) can't be merged, we just don't use it
+            if (other == null || other.length != REGISTERS) {
+                return;
+            }
+
+            for (int i = 0; i < REGISTERS; i++) {
+                raise(i, other[i]);
+            }
+        }
+
+        // a register read while it's raised is either its old or its new value, both fine to store
+        byte[] toBytes() {
+
+            return registers.clone();
+        }
+
+        long estimate() {
+
+            double sum = 0;
+            int zeros = 0;
+
+            for (byte register : registers) {
+                sum += Math.scalb(1.0, -register);
+                if (register == 0) {
+                    zeros++;
+                }
+            }
+
+            double estimate = ALPHA * REGISTERS * REGISTERS / sum;
+
+            // few viewers leave many registers empty, counting those is more exact there
+            if (estimate <= 2.5 * REGISTERS && zeros > 0) {
+                estimate = REGISTERS * Math.log((double) REGISTERS / zeros);
+            }
+
+            return Math.round(estimate);
+        }
+
+        private void raise(int index, byte rank) {
+
+            byte current;
+
+            while ((current = (byte) REGISTER.getVolatile(registers, index)) < rank) {
+                if (REGISTER.compareAndSet(registers, index, current, rank)) {
+                    return;
+                }
+            }
+        }
+    }
+}
@@ -5,38 +5,57 @@ import com.yearis.blog_application.exception.BlogAPIException;
 import com.yearis.blog_application.exception.ResourceNotFoundException;
 import com.yearis.blog_application.payload.request.PasswordChangeRequest;
 import com.yearis.blog_application.payload.request.UserUpdateRequest;
+import com.yearis.blog_application.payload.response.SuggestionResponse;
 import com.yearis.blog_application.payload.response.UserProfileResponse;
 import com.yearis.blog_application.repository.UserRepository;
+import com.yearis.blog_application.search.SuggestIndex;
+import com.yearis.blog_application.security.CurrentUser;
+import com.yearis.blog_application.security.TokenVersionRegistry;
+import com.yearis.blog_application.security.UserDetailsCache;
 import com.yearis.blog_application.service.UserService;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.domain.Slice;
+import org.springframework.data.domain.Sort;
 import org.springframework.http.HttpStatus;
-import org.springframework.security.core.context.SecurityContextHolder;
-import org.springframework.security.core.userdetails.UsernameNotFoundException;
 import org.springframework.security.crypto.password.PasswordEncoder;
 import org.springframework.stereotype.Service;
 import org.springframework.transaction.annotation.Transactional;
 
+import java.time.LocalDateTime;
 import java.util.List;
-import java.util.Objects;
 
 @Service
 @Transactional(readOnly = true)
 public class UserServiceImpl implements UserService {
 
+    // a typeahead dropdown never shows more than this
+    private static final int MAX_SUGGESTIONS = 20;
+
     private final UserRepository userRepository;
     private final PasswordEncoder passwordEncoder;
+    private final UserDetailsCache userDetailsCache;
+    private final TokenVersionRegistry tokenVersionRegistry;
+    private final SuggestIndex suggestIndex;
+
+    // our current user, resolved at most once per request
+    private final CurrentUser currentUser;
 
-    public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder) {
+    public UserServiceImpl(UserRepository userRepository, PasswordEncoder passwordEncoder, UserDetailsCache userDetailsCache, TokenVersionRegistry tokenVersionRegistry, SuggestIndex suggestIndex, CurrentUser currentUser) {
         this.userRepository = userRepository;
         this.passwordEncoder = passwordEncoder;
+        this.userDetailsCache = userDetailsCache;
+        this.tokenVersionRegistry = tokenVersionRegistry;
+        this.suggestIndex = suggestIndex;
+        this.currentUser = currentUser;
     }
 
-    // get our current user
-    private User currentUser() {
+    // every token of our user carries the old username or password state, so we revoke them all
+    private void revokeTokens(User user) {
 
-        String usernameOrEmail = Objects.requireNonNull(SecurityContextHolder.getContext().getAuthentication()).getName();
-
-        return userRepository.findByUsernameOrEmail(usernameOrEmail, usernameOrEmail)
-                .orElseThrow(() -> new UsernameNotFoundException("User not found"));
+        user.setTokenVersion(user.getTokenVersion() + 1);
+        user.setTokenVersionChangedAt(LocalDateTime.now());
+        tokenVersionRegistry.update(user.getId(), user.getTokenVersion());
     }
 
     /// U: Update
@@ -53,7 +72,7 @@ public class UserServiceImpl implements UserService {
 
         // first we make sure the user whose details have to be updated exists or not
         // and current user always exists
-        User currentUser = currentUser();
+        User currentUser = this.currentUser.get();
 
         // new username shouldn't be his current username
         if (currentUser.getUsername().equals(userUpdateRequest.getUsername())) {
@@ -67,12 +86,18 @@ public class UserServiceImpl implements UserService {
             throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Username already exists.\nTry another name");
         }
 
+        // the cached login details belong to the old username, so we drop them
+        userDetailsCache.invalidate(currentUser.getUsername());
+
         // now we set the name
         currentUser.setUsername(userUpdateRequest.getUsername());
+        revokeTokens(currentUser);
 
         // now we save the user
         userRepository.save(currentUser);
 
+        suggestIndex.indexUser(currentUser.getId(), currentUser.getUsername());
+
         return "Username updated!";
     }
 
@@ -86,7 +111,7 @@ public class UserServiceImpl implements UserService {
         }
 
         // same as updating username
-        User currentUser = currentUser();
+        User currentUser = this.currentUser.get();
 
         // new email shouldn't be his current email
         if (currentUser.getEmail().equals(userUpdateRequest.getEmail())) {
@@ -106,6 +131,8 @@ public class UserServiceImpl implements UserService {
         // now we save the user
         userRepository.save(currentUser);
 
+        userDetailsCache.invalidate(currentUser.getUsername());
+
         return "Email updated!";
     }
 
@@ -117,7 +144,7 @@ public class UserServiceImpl implements UserService {
             throw new BlogAPIException(HttpStatus.BAD_REQUEST, "About section cannot be null");
         }
 
-        User currentUser = currentUser();
+        User currentUser = this.currentUser.get();
 
         // now we set the about
         currentUser.setAbout(userUpdateRequest.getAbout());
@@ -133,7 +160,7 @@ public class UserServiceImpl implements UserService {
     public String updatePassword(PasswordChangeRequest passwordChangeRequest) {
 
         // first we wanna make sure that user is logged in for this else password cant be changed
-        User currentUser = currentUser();
+        User currentUser = this.currentUser.get();
 
         // now we check if newPassword and confirmedNewPassword match or not
         if (!passwordChangeRequest.getNewPassword().equals(passwordChangeRequest.getConfirmationNewPassword())) {
@@ -154,19 +181,30 @@ public class UserServiceImpl implements UserService {
 
         // now we set the password
         currentUser.setPassword(passwordEncoder.encode(passwordChangeRequest.getConfirmationNewPassword()));
+        revokeTokens(currentUser);
 
         // now we save it
         userRepository.save(currentUser);
 
+        // the cached login details still hold the old password hash
+        userDetailsCache.invalidate(currentUser.getUsername());
+
         return "Password updated!";
     }
 
     @Override
     @Transactional(readOnly = true)
-    public List<UserProfileResponse> searchUsers(String username) {
+    public List<UserProfileResponse> searchUsers(String username, int pageNo, int pageSize) {
+
+        if (pageNo < 0 || pageSize < 1) {
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Invalid page number or page size");
+        }
 
         // this feature doesn't require a user to be logged in
-        List<User> users = userRepository.findByUsernameContaining(username);
+        // one page at a time, a short query like "a" would otherwise return almost every user
+        Pageable pageable = PageRequest.of(pageNo, pageSize, Sort.by("username"));
+
+        Slice<User> users = userRepository.findByUsernameContaining(username, pageable);
 
         return users.stream()
                 .map(user -> {
@@ -179,6 +217,19 @@ public class UserServiceImpl implements UserService {
                 }).toList();
     }
 
+    // answered from memory, the search box calls this on every keystroke
+    @Override
+    public List<SuggestionResponse> suggestUsers(String prefix, int limit) {
+
+        if (limit < 1 || limit > MAX_SUGGESTIONS) {
+            throw new BlogAPIException(HttpStatus.BAD_REQUEST, "Limit must be between 1 and " + MAX_SUGGESTIONS);
+        }
+
+        return suggestIndex.suggestUsers(prefix, limit).stream()
+                .map(suggestion -> new SuggestionResponse(suggestion.id(), suggestion.text()))
+                .toList();
+    }
+
     @Override
     @Transactional(readOnly = true)
     public UserProfileResponse getPublicProfile(Long id) {
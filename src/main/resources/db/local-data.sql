@@ -0,0 +1,19 @@
+-- the rows our app can't run without, for the local profile where Hibernate creates the tables instead of Flyway
+-- (same as in db/migration/V1__baseline.sql)
+-- also used by our tests (src/test/resources/application-test.properties)
+
+-- Our Roles
+INSERT INTO roles (id, name) VALUES (1, 'ROLE_ADMIN');
+INSERT INTO roles (id, name) VALUES (2, 'ROLE_USER');
+
+-- Our POST_VIEWS Table (no entity behind it, PostViewCounter writes it with JDBC, so Hibernate doesn't create it)
+CREATE TABLE IF NOT EXISTS post_views (
+    post_id BIGINT PRIMARY KEY,
+    views BIGINT NOT NULL DEFAULT 0,
+    viewers VARBINARY(1024),
+    last_viewed_date DATETIME(6),
+
+    FOREIGN KEY (post_id)
+    REFERENCES posts(id)
+    ON DELETE CASCADE
+);
@@ -0,0 +1,3 @@
+-- V10: likes take their ids from ID_GENERATORS too (see V8), in blocks of 50
+-- their first block starts past every id AUTO_INCREMENT already gave out (and at our usual 10001 on an empty table)
+INSERT INTO id_generators (sequence_name, next_val) SELECT 'likes', GREATEST(COALESCE(MAX(id), 0), 10000) + 100 FROM likes;
@@ -0,0 +1,9 @@
+-- V11: when token_version was last bumped, so TokenVersionRegistry only reloads the versions that changed since its last look
+-- instead of reading every bumped user every 30 seconds
+ALTER TABLE users
+    ADD COLUMN token_version_changed_at DATETIME(6) NULL,
+    ADD INDEX idx_users_token_version_changed_at (token_version_changed_at);
+
+-- we don't know when the versions we already have were bumped, so we count them as bumped now
+-- (their old tokens stay revoked for one more token lifetime, after that nobody can hold one anymore)
+UPDATE users SET token_version_changed_at = NOW(6) WHERE token_version > 0;
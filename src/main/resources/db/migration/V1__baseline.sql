@@ -1,3 +1,7 @@
+-- V1: our schema exactly as Blog-Application-DB.sql had it before we versioned it (every database out there has this)
+-- an existing database is baselined at this version instead of running it (spring.flyway.baseline-on-migrate),
+-- a new one gets it from here. Everything we changed since then is a migration of its own (V2 and up)
+
 -- Our ROLES Table
 CREATE TABLE IF NOT EXISTS roles (
 	id BIGINT AUTO_INCREMENT PRIMARY KEY,
@@ -0,0 +1,3 @@
+-- V2: bumped to revoke every token of a user (password change, logout everywhere), tokens carry the version they were made with
+ALTER TABLE users
+    ADD COLUMN token_version INT NOT NULL DEFAULT 0;
@@ -0,0 +1,5 @@
+-- V3: our feeds are sorted by newest first, so they can seek on these instead of sorting
+-- (idx_posts_user_id_created_date starts with the foreign key column, MySQL drops the index it made for that key on its own)
+ALTER TABLE posts
+    ADD INDEX idx_posts_created_date_id (created_date, id),
+    ADD INDEX idx_posts_user_id_created_date (user_id, created_date, id);
@@ -0,0 +1,9 @@
+-- V4: bumped on every edit and like, our ETags and Last-Modified headers are built from these
+-- rows from before start at version 0 without a last modification, their ETag changes once with their first edit or like
+ALTER TABLE posts
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN last_modified_date DATETIME(6);
+
+ALTER TABLE comments
+    ADD COLUMN version BIGINT NOT NULL DEFAULT 0,
+    ADD COLUMN last_modified_date DATETIME(6);
@@ -0,0 +1,11 @@
+-- V5: Our POST_VIEWS Table (written in batches by PostViewCounter)
+CREATE TABLE post_views (
+	post_id BIGINT PRIMARY KEY,
+    views BIGINT NOT NULL DEFAULT 0,
+    viewers VARBINARY(1024), -- HyperLogLog sketch of the unique viewers
+    last_viewed_date DATETIME(6),
+    
+    FOREIGN KEY (post_id)
+    REFERENCES posts(id)
+    ON DELETE CASCADE
+);
@@ -0,0 +1,21 @@
+-- V6: the ids from the root comment down to each comment, 8 base-36 chars each (see CommentPath)
+-- a subtree is a prefix of path, so idx_comments_path makes it one range scan
+ALTER TABLE comments
+    ADD COLUMN path VARCHAR(1024) CHARACTER SET ascii COLLATE ascii_bin,
+    ADD INDEX idx_comments_path (path);
+
+-- backfill: every comment gets its parent's path plus its own id (same format as CommentPath),
+-- walking down from the root comments so a parent always has its path before its replies
+UPDATE comments c
+JOIN (
+    WITH RECURSIVE filled (id, path) AS (
+        SELECT r.id, CAST(LPAD(LOWER(CONV(r.id, 10, 36)), 8, '0') AS CHAR(1024) CHARACTER SET ascii)
+        FROM comments r
+        WHERE r.parent_id IS NULL
+        UNION ALL
+        SELECT r.id, CONCAT(f.path, LPAD(LOWER(CONV(r.id, 10, 36)), 8, '0'))
+        FROM comments r JOIN filled f ON r.parent_id = f.id
+    )
+    SELECT id, path FROM filled
+) f ON f.id = c.id
+SET c.path = f.path;
@@ -0,0 +1,25 @@
+-- V7: denormalized counters, kept in step by the app and corrected by the reconciliation job
+-- comment_count is every comment of a post, reply_count only the direct replies of a comment
+ALTER TABLE posts
+    ADD COLUMN comment_count INT NOT NULL DEFAULT 0;
+
+ALTER TABLE comments
+    ADD COLUMN reply_count INT NOT NULL DEFAULT 0;
+
+-- backfill: the posts/comments from before get counted once here
+UPDATE posts p
+JOIN (
+    SELECT c.post_id, COUNT(*) AS comments
+    FROM comments c
+    GROUP BY c.post_id
+) c ON c.post_id = p.id
+SET p.comment_count = c.comments;
+
+UPDATE comments c
+JOIN (
+    SELECT r.parent_id, COUNT(*) AS replies
+    FROM comments r
+    WHERE r.parent_id IS NOT NULL
+    GROUP BY r.parent_id
+) r ON r.parent_id = c.id
+SET c.reply_count = r.replies;
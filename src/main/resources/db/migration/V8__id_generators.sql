@@ -0,0 +1,11 @@
+-- V8: Our ID_GENERATORS Table (Hibernate's table generator for posts, comments and users, in blocks of 50)
+-- unlike AUTO_INCREMENT, Hibernate has the id before the insert, so inserts can go out in JDBC batches
+CREATE TABLE id_generators (
+	sequence_name VARCHAR(64) PRIMARY KEY,
+    next_val BIGINT NOT NULL
+);
+
+-- the first blocks start past every id AUTO_INCREMENT already gave out (and at our usual 10001 on an empty table)
+INSERT INTO id_generators (sequence_name, next_val) SELECT 'posts', GREATEST(COALESCE(MAX(id), 0), 10000) + 100 FROM posts;
+INSERT INTO id_generators (sequence_name, next_val) SELECT 'comments', GREATEST(COALESCE(MAX(id), 0), 10000) + 100 FROM comments;
+INSERT INTO id_generators (sequence_name, next_val) SELECT 'users', GREATEST(COALESCE(MAX(id), 0), 10000) + 100 FROM users;
@@ -0,0 +1,17 @@
+-- V9: indexes for our hot access paths, so every page we serve is an index range read in the order we want it
+-- (IndexUsageTest EXPLAINs the queries behind these pages and fails on any full table scan)
+--
+-- posts(created_date, id) and posts(user_id, created_date, id) came with V3, our feeds already seek on them
+
+-- root comments of a post, most liked first: WHERE post_id = ? AND parent_id IS NULL ORDER BY likes DESC
+-- replies of a comment, oldest first: WHERE parent_id = ? ORDER BY created_date
+-- comments of a user, newest first: WHERE user_id = ? ORDER BY created_date DESC
+-- each starts with its foreign key column, so MySQL drops the index it made for that key on its own
+ALTER TABLE comments
+    ADD INDEX idx_comments_post_id_parent_id_likes (post_id, parent_id, likes),
+    ADD INDEX idx_comments_parent_id_created_date (parent_id, created_date),
+    ADD INDEX idx_comments_user_id_created_date (user_id, created_date);
+
+-- liked posts/comments of a user, newest first: WHERE user_id = ? AND post_id (or comment_id) IS NOT NULL ORDER BY created_date DESC
+ALTER TABLE likes
+    ADD INDEX idx_likes_user_id_created_date (user_id, created_date);
@@ -0,0 +1,153 @@
+package com.yearis.blog_application.config;
+
+import com.yearis.blog_application.security.UserPrincipal;
+import com.zaxxer.hikari.HikariDataSource;
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Qualifier;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// which pool our transactions really end up on, with a replica that is a database of its own:
+// both databases have a marker table that says which one it is, and the replica a table we set its lag in
+@SpringBootTest(properties = {
+        "spring.datasource.replica.url = jdbc:h2:mem:replica-${random.uuid};MODE=MySQL;DATABASE_TO_LOWER=TRUE;DB_CLOSE_DELAY=-1",
+        "spring.datasource.replica.lag-query = SELECT seconds AS Seconds_Behind_Source FROM replica_lag",
+        "spring.datasource.replica.max-lag = 5",
+        "spring.datasource.replica.sticky-window = 60000"
+})
+@ActiveProfiles("test")
+class ReadWriteRoutingTest {
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private PlatformTransactionManager transactionManager;
+
+    @Autowired
+    @Qualifier("primaryDataSource")
+    private HikariDataSource primary;
+
+    @Autowired
+    @Qualifier("replicaDataSource")
+    private HikariDataSource replica;
+
+    @Autowired
+    private ReplicaLagMonitor lagMonitor;
+
+    @BeforeEach
+    void markDatabases() {
+
+        mark(primary, "primary");
+        mark(replica, "replica");
+
+        // the replica pool is read-only, so the marker and the lag are written around it
+        setLag(0);
+    }
+
+    @AfterEach
+    void clearUser() {
+
+        SecurityContextHolder.clearContext();
+    }
+
+    @Test
+    void readOnlyTransactionsUseTheReplica() {
+
+        assertThat(databaseIn(true)).isEqualTo("replica");
+    }
+
+    @Test
+    void writingTransactionsUseThePrimary() {
+
+        assertThat(databaseIn(false)).isEqualTo("primary");
+    }
+
+    @Test
+    void statementsOutsideATransactionUseThePrimary() {
+
+        assertThat(jdbcTemplate.queryForObject("SELECT name FROM routing_marker", String.class)).isEqualTo("primary");
+    }
+
+    @Test
+    void readsStayOnThePrimaryWhileTheReplicaLags() {
+
+        setLag(60);
+        assertThat(databaseIn(true)).isEqualTo("primary");
+
+        setLag(0);
+        assertThat(databaseIn(true)).isEqualTo("replica");
+    }
+
+    @Test
+    void aUserReadsTheirOwnWritesFromThePrimary() {
+
+        signIn(1001L);
+        databaseIn(false);
+
+        assertThat(databaseIn(true)).as("the user who just wrote").isEqualTo("primary");
+
+        signIn(1002L);
+
+        assertThat(databaseIn(true)).as("anybody else").isEqualTo("replica");
+    }
+
+    /// --- Internals ---
+
+    // the marker of the database a transaction's first statement went to
+    private String databaseIn(boolean readOnly) {
+
+        TransactionTemplate transaction = new TransactionTemplate(transactionManager);
+        transaction.setReadOnly(readOnly);
+
+        return transaction.execute(status -> jdbcTemplate.queryForObject("SELECT name FROM routing_marker", String.class));
+    }
+
+    private void setLag(long seconds) {
+
+        JdbcTemplate replicaAdmin = new JdbcTemplate(writable(replica));
+
+        replicaAdmin.execute("CREATE TABLE IF NOT EXISTS replica_lag (seconds BIGINT)");
+        replicaAdmin.update("DELETE FROM replica_lag");
+        replicaAdmin.update("INSERT INTO replica_lag (seconds) VALUES (?)", seconds);
+
+        lagMonitor.check();
+    }
+
+    private static void mark(HikariDataSource dataSource, String name) {
+
+        JdbcTemplate admin = new JdbcTemplate(writable(dataSource));
+
+        admin.execute("CREATE TABLE IF NOT EXISTS routing_marker (name VARCHAR(10))");
+        admin.update("DELETE FROM routing_marker");
+        admin.update("INSERT INTO routing_marker (name) VALUES (?)", name);
+    }
+
+    // the same database as the pool, through a connection of our own that may write
+    private static DataSource writable(HikariDataSource pool) {
+
+        return new DriverManagerDataSource(pool.getJdbcUrl(), pool.getUsername(), pool.getPassword());
+    }
+
+    private static void signIn(Long userId) {
+
+        UserPrincipal principal = new UserPrincipal(userId, "user" + userId, "", 0, List.of());
+
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities()));
+    }
+}
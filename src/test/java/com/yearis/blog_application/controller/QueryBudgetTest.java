@@ -0,0 +1,433 @@
+package com.yearis.blog_application.controller;
+
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.webmvc.test.autoconfigure.AutoConfigureMockMvc;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.MediaType;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.web.servlet.MockMvc;
+import org.springframework.test.web.servlet.request.MockHttpServletRequestBuilder;
+import tools.jackson.databind.json.JsonMapper;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.assertj.core.api.Assertions.assertThat;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.delete;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.get;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.post;
+import static org.springframework.test.web.servlet.request.MockMvcRequestBuilders.put;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+// the most SQL statements (through Hibernate) every endpoint may send, and the most entities it may load for it
+// a request over its budget fails the build, which is how N+1 regressions get caught before they ship
+//
+// every budget is the worst path through the code (a cache miss, a full page that needs its count query), so a request
+// that took a cheaper path still passes. No entity may be fetched lazily one at a time either, that is the N+1 itself
+//
+// when you change what an endpoint loads, change its line here in the same commit
+//
+// JDBC that doesn't go through Hibernate (the comment tree, the view counts, the reconciliation) isn't counted here
+@SpringBootTest(properties = {
+        "spring.jpa.properties.hibernate.generate_statistics = true",
+        // no scheduled query of our own in the middle of a request we count
+        "spring.jwt.token-version.refresh-interval = 3600000"
+})
+@AutoConfigureMockMvc
+@ActiveProfiles("test")
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class QueryBudgetTest {
+
+    // User.roles is eager: a statement that loads users can take one more (batched) select for their roles,
+    // and the roles (ROLE_USER, ROLE_ADMIN) are entities loaded with them
+    private static final int ROLES = 1;
+    private static final int ROLE_ROWS = 2;
+
+    private static final int POSTS = 3;
+    private static final int PAGE = 5;
+
+    @Autowired
+    private MockMvc mockMvc;
+
+    @Autowired
+    private JsonMapper jsonMapper;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    private Statistics statistics;
+
+    private int accounts = 0;
+
+    // alice writes the posts, bob comments on the first one and alice replies to him
+    private Account alice;
+    private Account bob;
+    private Account admin;
+
+    private final List<Long> postIds = new ArrayList<>();
+    private Long commentId;
+    private Long replyId;
+
+    @BeforeAll
+    void seed() throws Exception {
+
+        statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+
+        alice = signUp("alice");
+        bob = signUp("bob");
+
+        admin = register("admin");
+        jdbcTemplate.update("INSERT INTO users_roles (user_id, role_id) SELECT id, 1 FROM users WHERE username = ?", admin.username());
+        admin = signIn(admin.username());
+
+        for (int i = 0; i < POSTS; i++) {
+            postIds.add(idOf(perform(as(alice, post("/api/posts")), postBody("Budget post number " + i))));
+        }
+
+        Long postId = postIds.get(0);
+
+        commentId = idOf(perform(as(bob, post("/api/posts/{postId}/comments", postId)), commentBody("The first comment", null)));
+        perform(as(bob, post("/api/posts/{postId}/comments", postId)), commentBody("The second comment", null));
+        replyId = idOf(perform(as(alice, post("/api/posts/{postId}/comments", postId)), commentBody("A reply to the first", commentId)));
+
+        perform(as(bob, post("/api/posts/{id}/like", postId)), null);
+        perform(as(alice, post("/api/posts/{postId}/comments/{commentId}/like", postId, commentId)), null);
+    }
+
+    /// --- Posts ---
+
+    @Test
+    void postReads() throws Exception {
+
+        Long postId = postIds.get(0);
+        String ids = postIds.stream().map(String::valueOf).collect(Collectors.joining(","));
+
+        // version, post + author on a JSON cache miss (the view is only counted in memory)
+        assertWithinBudget("GET /api/posts/{id}", 2 + ROLES, 2 + ROLE_ROWS,
+                get("/api/posts/{id}", postId));
+
+        // exists, the counts come from JDBC
+        assertWithinBudget("GET /api/posts/{id}/views", 1, 0,
+                get("/api/posts/{id}/views", postId));
+
+        // posts + authors in one IN query
+        assertWithinBudget("GET /api/posts/batch", 1 + ROLES, POSTS + 1 + ROLE_ROWS,
+                get("/api/posts/batch").param("ids", ids));
+
+        assertWithinBudget("POST /api/posts/batch", 1 + ROLES, POSTS + 1 + ROLE_ROWS,
+                json(post("/api/posts/batch"), "{\"ids\": [" + ids + "]}"));
+
+        // one slice with the authors, no count query
+        assertWithinBudget("GET /api/posts/search", 1 + ROLES, PAGE + 1 + ROLE_ROWS,
+                get("/api/posts/search").param("title", "Budget post").param("pageSize", String.valueOf(PAGE)));
+
+        // the index finds the ids, one IN query loads them
+        assertWithinBudget("GET /api/posts/search?q=", 1 + ROLES, PAGE + 1 + ROLE_ROWS,
+                get("/api/posts/search").param("q", "budget").param("pageSize", String.valueOf(PAGE)));
+
+        // one projection, no entities
+        assertWithinBudget("GET /api/posts/search?view=summary", 1, 0,
+                get("/api/posts/search").param("title", "Budget post").param("view", "summary").param("pageSize", String.valueOf(PAGE)));
+
+        // from memory
+        assertWithinBudget("GET /api/posts/suggest", 0, 0,
+                get("/api/posts/suggest").param("q", "Bud"));
+
+        // one slice (the first pages usually come from the feed cache, its refill is the same query)
+        assertWithinBudget("GET /api/posts", 1 + ROLES, PAGE + 1 + ROLE_ROWS,
+                get("/api/posts").param("pageSize", String.valueOf(PAGE)));
+
+        // the ranking gives the ids, one IN query loads them (one slice while the ranking is still built)
+        assertWithinBudget("GET /api/posts?sort=", 1 + ROLES, PAGE + 1 + ROLE_ROWS,
+                get("/api/posts").param("sort", "hot").param("pageSize", String.valueOf(PAGE)));
+
+        assertWithinBudget("GET /api/posts?view=summary", 1, 0,
+                get("/api/posts").param("view", "summary").param("pageSize", String.valueOf(PAGE)));
+
+        // one seek query with the authors
+        assertWithinBudget("GET /api/posts/feed", 1 + ROLES, PAGE + 1 + ROLE_ROWS,
+                get("/api/posts/feed").param("pageSize", String.valueOf(PAGE)));
+    }
+
+    @Test
+    void postWrites() throws Exception {
+
+        // author, INSERT post (flushed right away for its createdDate), INSERT first like at commit
+        // (the ids come from the id_generators block in memory)
+        Long postId = idOf(assertWithinBudget("POST /api/posts", 3 + ROLES, 1 + ROLE_ROWS,
+                json(as(alice, post("/api/posts")), postBody("Budget post to change"))));
+
+        // post + author, UPDATE
+        assertWithinBudget("PUT /api/posts/{id}", 2 + ROLES, 2 + ROLE_ROWS,
+                json(as(alice, put("/api/posts/{id}", postId)), postBody("Budget post, changed")));
+
+        // unlike: DELETE. like: DELETE (nothing), INSERT IGNORE, likes = likes + 1
+        assertWithinBudget("POST /api/posts/{id}/like", 3, 0,
+                as(alice, post("/api/posts/{id}/like", postId)));
+
+        assertWithinBudget("POST /api/posts/{id}/like", 3, 0,
+                as(alice, post("/api/posts/{id}/like", postId)));
+
+        // MySQL deletes its likes with the post (ON DELETE CASCADE), the schema Hibernate makes for our tests doesn't
+        jdbcTemplate.update("DELETE FROM likes WHERE post_id = ?", postId);
+
+        // post + author, a comment check (its counter is 0), DELETE (an UPDATE instead when it has comments)
+        assertWithinBudget("DELETE /api/posts/{id}", 3 + ROLES, 2 + ROLE_ROWS,
+                as(alice, delete("/api/posts/{id}", postId)));
+    }
+
+    /// --- Comments ---
+
+    @Test
+    void commentReads() throws Exception {
+
+        Long postId = postIds.get(0);
+
+        // version, post + author, comment + author
+        assertWithinBudget("GET /api/posts/{postId}/comments/{commentId}", 3 + 2 * ROLES, 4 + ROLE_ROWS,
+                get("/api/posts/{postId}/comments/{commentId}", postId, commentId));
+
+        // versions (a slice), page + count of the root comments with their authors
+        assertWithinBudget("GET /api/posts/{postId}/comments", 3 + ROLES, PAGE + 1 + ROLE_ROWS,
+                get("/api/posts/{postId}/comments", postId).param("pageSize", String.valueOf(PAGE)));
+
+        // versions, parent + author, page + count of the replies with their authors
+        assertWithinBudget("GET /api/posts/{postId}/comments/{commentId}/replies", 4 + 2 * ROLES, 4 + ROLE_ROWS,
+                get("/api/posts/{postId}/comments/{commentId}/replies", postId, commentId));
+
+        // exists, the thread is one query through JDBC
+        assertWithinBudget("GET /api/posts/{postId}/comments/tree", 1, 0,
+                get("/api/posts/{postId}/comments/tree", postId));
+
+        // comment + author, the ancestors by the ids in its path, the descendant count
+        assertWithinBudget("GET /api/posts/{postId}/comments/{commentId}/context", 3 + 2 * ROLES, 4 + ROLE_ROWS,
+                get("/api/posts/{postId}/comments/{commentId}/context", postId, replyId));
+
+        // comment + author, one slice of the subtree by path prefix
+        assertWithinBudget("GET /api/posts/{postId}/comments/{commentId}/subtree", 2 + 2 * ROLES, 4 + ROLE_ROWS,
+                get("/api/posts/{postId}/comments/{commentId}/subtree", postId, commentId));
+    }
+
+    @Test
+    void commentWrites() throws Exception {
+
+        Long postId = postIds.get(1);
+
+        // post + author, the commenting user, INSERT comment with its path (flushed right away for its createdDate),
+        // then at the first counter UPDATE the flush of the INSERT first like, and the comment count
+        Long rootId = idOf(assertWithinBudget("POST /api/posts/{postId}/comments", 5 + 2 * ROLES, 3 + ROLE_ROWS,
+                json(as(bob, post("/api/posts/{postId}/comments", postId)), commentBody("A comment to change", null))));
+
+        // a reply also loads its parent + author and moves the parent's reply count
+        Long childId = idOf(assertWithinBudget("POST /api/posts/{postId}/comments", 7 + 3 * ROLES, 4 + ROLE_ROWS,
+                json(as(alice, post("/api/posts/{postId}/comments", postId)), commentBody("A reply to change", rootId))));
+
+        // post + author, comment + author, UPDATE
+        assertWithinBudget("PUT /api/posts/{postId}/comments/{commentId}", 3 + 2 * ROLES, 4 + ROLE_ROWS,
+                json(as(alice, put("/api/posts/{postId}/comments/{commentId}", postId, childId)), commentBody("A reply, changed", null)));
+
+        // exists in the post, DELETE (nothing), INSERT IGNORE, likes = likes + 1
+        assertWithinBudget("POST /api/posts/{postId}/comments/{commentId}/like", 4, 0,
+                as(alice, post("/api/posts/{postId}/comments/{commentId}/like", postId, rootId)));
+
+        // same as for posts, on MySQL the likes go with the comment
+        jdbcTemplate.update("DELETE FROM likes WHERE comment_id = ?", childId);
+
+        // post + author, comment + author, a reply check (its counter is 0), its replies (cascade),
+        // DELETE and the comment and reply counts (an UPDATE instead when it has replies)
+        assertWithinBudget("DELETE /api/posts/{postId}/comments/{commentId}", 7 + 2 * ROLES, 4 + ROLE_ROWS,
+                as(alice, delete("/api/posts/{postId}/comments/{commentId}", postId, childId)));
+    }
+
+    /// --- Users ---
+
+    @Test
+    void userReads() throws Exception {
+
+        // one slice, with the roles of the users found
+        assertWithinBudget("GET /api/users/search", 1 + ROLES, PAGE + ROLE_ROWS,
+                get("/api/users/search").param("username", "budget").param("pageSize", String.valueOf(PAGE)));
+
+        // from memory
+        assertWithinBudget("GET /api/users/suggest", 0, 0,
+                get("/api/users/suggest").param("q", "budget"));
+
+        assertWithinBudget("GET /api/users/{id}", 1 + ROLES, 1 + ROLE_ROWS,
+                get("/api/users/{id}", alice.id()));
+
+        // one slice with the author
+        assertWithinBudget("GET /api/users/{userId}/posts", 1 + ROLES, PAGE + 1 + ROLE_ROWS,
+                get("/api/users/{userId}/posts", alice.id()).param("pageSize", String.valueOf(PAGE)));
+
+        assertWithinBudget("GET /api/users/{userId}/posts?view=summary", 1, 0,
+                get("/api/users/{userId}/posts", alice.id()).param("view", "summary").param("pageSize", String.valueOf(PAGE)));
+
+        // page + count with the author
+        assertWithinBudget("GET /api/users/{userId}/comments", 2 + ROLES, PAGE + 1 + ROLE_ROWS,
+                as(bob, get("/api/users/{userId}/comments", bob.id())).param("pageSize", String.valueOf(PAGE)));
+
+        // page + count of the likes with their posts and the authors of those
+        assertWithinBudget("GET /api/users/{userId}/liked-posts", 2 + ROLES, 3 * PAGE + ROLE_ROWS,
+                as(bob, get("/api/users/{userId}/liked-posts", bob.id())).param("pageSize", String.valueOf(PAGE)));
+
+        assertWithinBudget("GET /api/users/{userId}/liked-comments", 2 + ROLES, 3 * PAGE + ROLE_ROWS,
+                as(bob, get("/api/users/{userId}/liked-comments", bob.id())).param("pageSize", String.valueOf(PAGE)));
+    }
+
+    @Test
+    void userWrites() throws Exception {
+
+        // a user of its own, the changes below would break the accounts the other tests use
+        Account carol = signUp("carol");
+
+        // user, exists, UPDATE
+        assertWithinBudget("PUT /api/users/username", 3 + ROLES, 1 + ROLE_ROWS,
+                json(as(carol, put("/api/users/username")), "{\"username\": \"" + carol.username() + "-new\"}"));
+
+        assertWithinBudget("PUT /api/users/email", 3 + ROLES, 1 + ROLE_ROWS,
+                json(as(carol, put("/api/users/email")), "{\"email\": \"" + carol.username() + "-new@example.com\"}"));
+
+        // user, UPDATE
+        assertWithinBudget("PUT /api/users/about", 2 + ROLES, 1 + ROLE_ROWS,
+                json(as(carol, put("/api/users/about")), "{\"about\": \"Only here to be counted\"}"));
+
+        // the last one, it bumps the token version
+        assertWithinBudget("PUT /api/users/password", 2 + ROLES, 1 + ROLE_ROWS,
+                json(as(carol, put("/api/users/password")),
+                        "{\"currentPassword\": \"Password123!\", \"newPassword\": \"Password456!\", \"confirmationNewPassword\": \"Password456!\"}"));
+    }
+
+    /// --- Auth & Admin ---
+
+    @Test
+    void authAndAdmin() throws Exception {
+
+        String username = "budget-user-" + (++accounts);
+
+        // 2 exists, role, INSERT user, INSERT role link
+        assertWithinBudget("POST /api/auth/register", 5, 1,
+                json(post("/api/auth/register"), registrationBody(username)));
+
+        // user + roles
+        assertWithinBudget("POST /api/auth/login", 1 + ROLES, 1 + ROLE_ROWS,
+                json(post("/api/auth/login"), loginBody(username)));
+
+        // which authors exist, then one batch each: INSERT posts, INSERT comments, UPDATE comment paths
+        assertWithinBudget("POST /api/admin/import", 4, 0,
+                json(as(admin, post("/api/admin/import")), """
+                        {"posts": [{"authorId": %d, "title": "An imported budget post", "content": "The content of an imported post",
+                                    "comments": [{"authorId": %d, "body": "An imported comment"},
+                                                 {"authorId": %d, "body": "Another imported comment"}]}]}
+                        """.formatted(alice.id(), bob.id(), bob.id())));
+
+        // all JDBC
+        assertWithinBudget("POST /api/admin/reconciliation/likes", 0, 0,
+                as(admin, post("/api/admin/reconciliation/likes")));
+
+        assertWithinBudget("POST /api/admin/reconciliation/comments", 0, 0,
+                as(admin, post("/api/admin/reconciliation/comments")));
+    }
+
+    /// --- Internals ---
+
+    private record Account(Long id, String username, String token) {
+    }
+
+    // sends the request on its own and checks what Hibernate did for it, returns the response body
+    private String assertWithinBudget(String endpoint, int statements, int loads, MockHttpServletRequestBuilder request) throws Exception {
+
+        statistics.clear();
+
+        String body = perform(request, null);
+
+        assertThat(statistics.getPrepareStatementCount()).as("statements of %s", endpoint).isLessThanOrEqualTo(statements);
+        assertThat(statistics.getEntityLoadCount()).as("entities loaded by %s", endpoint).isLessThanOrEqualTo(loads);
+        assertThat(statistics.getEntityFetchCount()).as("entities %s fetched one at a time", endpoint).isZero();
+
+        return body;
+    }
+
+    private String perform(MockHttpServletRequestBuilder request, String jsonBody) throws Exception {
+
+        if (jsonBody != null) {
+            json(request, jsonBody);
+        }
+
+        return mockMvc.perform(request)
+                .andExpect(status().is2xxSuccessful())
+                .andReturn()
+                .getResponse()
+                .getContentAsString();
+    }
+
+    private Account signUp(String name) throws Exception {
+
+        return signIn(register(name).username());
+    }
+
+    private Account register(String name) throws Exception {
+
+        String username = "budget-" + name + "-" + (++accounts);
+
+        perform(post("/api/auth/register"), registrationBody(username));
+
+        return new Account(null, username, null);
+    }
+
+    private Account signIn(String username) throws Exception {
+
+        String token = jsonMapper.readTree(perform(post("/api/auth/login"), loginBody(username))).get("token").asString();
+        Long id = jdbcTemplate.queryForObject("SELECT id FROM users WHERE username = ?", Long.class, username);
+
+        return new Account(id, username, token);
+    }
+
+    private Long idOf(String body) {
+
+        return jsonMapper.readTree(body).get("id").asLong();
+    }
+
+    private static MockHttpServletRequestBuilder as(Account account, MockHttpServletRequestBuilder request) {
+
+        return request.header(HttpHeaders.AUTHORIZATION, "Bearer " + account.token());
+    }
+
+    private static MockHttpServletRequestBuilder json(MockHttpServletRequestBuilder request, String body) {
+
+        return request.contentType(MediaType.APPLICATION_JSON).content(body);
+    }
+
+    private static String registrationBody(String username) {
+
+        return "{\"username\": \"%s\", \"email\": \"%s@example.com\", \"password\": \"Password123!\"}".formatted(username, username);
+    }
+
+    private static String loginBody(String username) {
+
+        return "{\"usernameOrEmail\": \"%s\", \"password\": \"Password123!\"}".formatted(username);
+    }
+
+    private static String postBody(String title) {
+
+        return "{\"title\": \"%s\", \"content\": \"The content of the post titled %s\"}".formatted(title, title);
+    }
+
+    private static String commentBody(String body, Long parentId) {
+
+        return parentId == null
+                ? "{\"body\": \"%s\"}".formatted(body)
+                : "{\"body\": \"%s\", \"parentId\": %d}".formatted(body, parentId);
+    }
+}
@@ -0,0 +1,357 @@
+package com.yearis.blog_application.repository;
+
+import com.yearis.blog_application.entity.Comment;
+import com.yearis.blog_application.entity.Like;
+import com.yearis.blog_application.entity.Post;
+import com.yearis.blog_application.entity.User;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.TestInstance;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.config.BeanPostProcessor;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.boot.test.context.TestConfiguration;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Import;
+import org.springframework.data.domain.Limit;
+import org.springframework.data.domain.PageRequest;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// EXPLAINs the SQL our repositories really send for the pages we serve, with the parameters they really bind,
+// and fails when one of them reads a whole table (H2 says tableScan where MySQL says type ALL)
+//
+// the tables here are made by Hibernate from the entities, whose @Table indexes mirror our migrations.
+// Our likes are toggled with a DELETE and an INSERT IGNORE, those are EXPLAINed too (in a transaction we roll back).
+// H2 doesn't show how an INSERT finds a duplicate, for us that's always the unique key (user_post_like, user_comment_like)
+//
+// Left out on purpose:
+// - findFeed / findAllBy / findAllSummaries (the first feed page) have no WHERE, MySQL walks idx_posts_created_date_id
+//   backwards for them but H2 can't read an index backwards and always reports a scan
+// - findByTitleContaining and friends (LIKE '%title%'), no index can answer a contains, that's what PostSearchIndex is for
+// - findByUsernameOrEmail, MySQL merges its two unique keys (index_merge) but H2 reports the OR as a scan
+// - lookups and updates by primary key (findById, findAllWithAuthorByIdIn, findByIdInOrderByPathAsc, existsByIdAndPostId,
+//   findVersionById, findExistingIds, updateLikes, updateCommentCount, updateReplyCount), and by unique key
+//   (findByEmail, findByUsername, existsByEmail, existsByUsername, RoleRepository.findByName), they can't scan
+@SpringBootTest
+@ActiveProfiles("test")
+@Import(IndexUsageTest.ExplainConfig.class)
+@TestInstance(TestInstance.Lifecycle.PER_CLASS)
+class IndexUsageTest {
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private PostRepository postRepository;
+
+    @Autowired
+    private CommentRepository commentRepository;
+
+    @Autowired
+    private LikeRepository likeRepository;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private Long userId;
+    private Long postId;
+    private Comment root;
+
+    // a few rows in every table, so the plans aren't made for empty tables
+    @BeforeAll
+    void seed() {
+
+        User user = userRepository.save(User.builder()
+                .username("indexes")
+                .email("indexes@example.com")
+                .password("$2a$10$notARealHashButLongEnough")
+                .tokenVersion(1)
+                .tokenVersionChangedAt(LocalDateTime.now())
+                .build());
+
+        userId = user.getId();
+
+        Post post = null;
+
+        for (int i = 0; i < 5; i++) {
+            post = postRepository.save(Post.builder()
+                    .title("Index usage post " + i)
+                    .content("Some content for the post number " + i)
+                    .author(user)
+                    .build());
+        }
+
+        postId = post.getId();
+
+        root = commentRepository.save(Comment.builder().body("A root comment").post(post).author(user).build());
+        root.setPath(pathOf(null, root.getId()));
+        root = commentRepository.save(root);
+
+        Comment reply = commentRepository.save(Comment.builder().body("A reply").post(post).author(user).parent(root).build());
+        reply.setPath(pathOf(root.getPath(), reply.getId()));
+        commentRepository.save(reply);
+
+        likeRepository.save(Like.builder().user(user).post(post).build());
+        likeRepository.save(Like.builder().user(user).comment(root).build());
+    }
+
+    /// --- Posts ---
+
+    @Test
+    void feedPagesSeekOnTheirIndex() {
+
+        LocalDateTime now = LocalDateTime.now();
+
+        assertNoTableScan(() -> postRepository.findFeedAfter(now, Long.MAX_VALUE, Limit.of(10)));
+        assertNoTableScan(() -> postRepository.findFeedByAuthorId(userId, Limit.of(10)));
+        assertNoTableScan(() -> postRepository.findFeedByAuthorIdAfter(userId, now, Long.MAX_VALUE, Limit.of(10)));
+    }
+
+    @Test
+    void postsOfAUserReadTheirIndex() {
+
+        Sort newestFirst = Sort.by("createdDate").descending().and(Sort.by("id").descending());
+
+        assertNoTableScan(() -> postRepository.findByAuthorId(userId, PageRequest.of(0, 10, newestFirst)));
+        assertNoTableScan(() -> postRepository.findSummariesByAuthorId(userId, PageRequest.of(0, 10, newestFirst)));
+    }
+
+    // what the hot/top feeds read while their ranking is still being built: a range on idx_posts_created_date_id
+    @Test
+    void rankingFallbackReadsTheRecentPostsOnly() {
+
+        Sort mostLiked = Sort.by("likes").descending().and(Sort.by("id").descending());
+
+        assertNoTableScan(() -> postRepository.findByCreatedDateAfter(LocalDateTime.now().minusWeeks(1), PageRequest.of(0, 10, mostLiked)));
+    }
+
+    /// --- Comments ---
+
+    @Test
+    void commentPagesReadTheirIndex() {
+
+        assertNoTableScan(() -> commentRepository.findByPostIdAndParentIdIsNull(postId, PageRequest.of(0, 10, Sort.by("likes").descending())));
+        assertNoTableScan(() -> commentRepository.findByParentId(root.getId(), PageRequest.of(0, 10, Sort.by("createdDate").ascending())));
+        assertNoTableScan(() -> commentRepository.findByAuthorId(userId, PageRequest.of(0, 10, Sort.by("createdDate").descending())));
+    }
+
+    // our ETags are read with the same WHERE and ORDER BY as the pages they stand for
+    @Test
+    void commentVersionsReadTheSameIndexAsTheirPages() {
+
+        assertNoTableScan(() -> commentRepository.findVersionByIdAndPostId(root.getId(), postId));
+        assertNoTableScan(() -> commentRepository.findVersionsByPostId(postId, PageRequest.of(0, 10, Sort.by("likes").descending())));
+        assertNoTableScan(() -> commentRepository.findVersionsByParentId(root.getId(), postId, PageRequest.of(0, 10, Sort.by("createdDate").ascending())));
+    }
+
+    @Test
+    void subtreesAreOneRangeOnThePath() {
+
+        assertNoTableScan(() -> commentRepository.findSubtree(root.getPath() + "_%", root.getPath().length() + 80, PageRequest.of(0, 50)));
+        assertNoTableScan(() -> commentRepository.countSubtree(root.getPath() + "_%"));
+    }
+
+    // asked before a hard delete when the counter says there's nothing left
+    @Test
+    void existenceChecksProbeOneIndex() {
+
+        assertNoTableScan(() -> commentRepository.existsByParentId(root.getId()));
+        assertNoTableScan(() -> commentRepository.existsByPostId(postId));
+    }
+
+    /// --- Likes ---
+
+    @Test
+    void likesOfAUserReadTheirIndex() {
+
+        Sort newestFirst = Sort.by("createdDate").descending();
+
+        assertNoTableScan(() -> likeRepository.findByUserIdAndPostIsNotNull(userId, PageRequest.of(0, 10, newestFirst)));
+        assertNoTableScan(() -> likeRepository.findByUserIdAndCommentIsNotNull(userId, PageRequest.of(0, 10, newestFirst)));
+    }
+
+    // our seed already liked both, so the inserts are ignored duplicates and the deletes find their row
+    @Test
+    void likeTogglesTouchOneRow() {
+
+        assertNoTableScanRolledBack(() -> likeRepository.insertPostLike(Long.MAX_VALUE, userId, postId));
+        assertNoTableScanRolledBack(() -> likeRepository.insertCommentLike(Long.MAX_VALUE, userId, root.getId()));
+        assertNoTableScanRolledBack(() -> likeRepository.deleteByUserIdAndPostId(userId, postId));
+        assertNoTableScanRolledBack(() -> likeRepository.deleteByUserIdAndCommentId(userId, root.getId()));
+    }
+
+    /// --- Users ---
+
+    // every refresh of TokenVersionRegistry, only the versions bumped since the last one
+    @Test
+    void tokenVersionRefreshReadsTheRecentBumpsOnly() {
+
+        assertNoTableScan(() -> userRepository.findTokenVersionsChangedAfter(LocalDateTime.now().minusHours(1)));
+    }
+
+    /// --- Internals ---
+
+    private static void assertNoTableScan(Runnable query) {
+
+        List<String> plans = Explainer.plansOf(query);
+
+        assertThat(plans).as("queries sent").isNotEmpty();
+
+        for (String plan : plans) {
+            assertThat(plan).as("plan").doesNotContainIgnoringCase("tableScan");
+        }
+    }
+
+    // for our @Modifying queries, they need a transaction and must not change the rows the other tests read
+    private void assertNoTableScanRolledBack(Runnable statement) {
+
+        transactionTemplate.executeWithoutResult(status -> {
+            status.setRollbackOnly();
+            assertNoTableScan(statement);
+        });
+    }
+
+    // same format as CommentPath (package-private in service.impl)
+    private static String pathOf(String parentPath, Long id) {
+
+        String segment = Long.toString(id, 36);
+
+        return (parentPath != null ? parentPath : "") + "0".repeat(8 - segment.length()) + segment;
+    }
+
+    @TestConfiguration
+    static class ExplainConfig {
+
+        @Bean
+        static BeanPostProcessor explainingDataSource() {
+
+            return new BeanPostProcessor() {
+                @Override
+                public Object postProcessAfterInitialization(Object bean, String beanName) {
+                    return bean instanceof DataSource dataSource ? Explainer.wrap(dataSource) : bean;
+                }
+            };
+        }
+    }
+
+    // sits between Hibernate and the pool: while plansOf runs, every query (and DELETE/INSERT) is EXPLAINed with the parameters it was sent with
+    // on the same connection before it runs
+    static final class Explainer {
+
+        private static final ThreadLocal<List<String>> PLANS = new ThreadLocal<>();
+
+        private record Parameter(Method setter, Object[] args) {
+        }
+
+        static List<String> plansOf(Runnable query) {
+
+            List<String> plans = new ArrayList<>();
+            PLANS.set(plans);
+
+            try {
+                query.run();
+            } finally {
+                PLANS.remove();
+            }
+
+            return plans;
+        }
+
+        static DataSource wrap(DataSource dataSource) {
+
+            return new DelegatingDataSource(dataSource) {
+                @Override
+                public Connection getConnection() throws SQLException {
+                    return connection(super.getConnection());
+                }
+            };
+        }
+
+        private static Connection connection(Connection connection) {
+
+            return proxy(Connection.class, (proxy, method, args) -> {
+
+                Object result = invoke(connection, method, args);
+
+                if (method.getName().equals("prepareStatement")) {
+                    return statement(connection, (PreparedStatement) result, (String) args[0]);
+                }
+
+                return result;
+            });
+        }
+
+        private static PreparedStatement statement(Connection connection, PreparedStatement statement, String sql) {
+
+            List<Parameter> parameters = new ArrayList<>();
+
+            return proxy(PreparedStatement.class, (proxy, method, args) -> {
+
+                String name = method.getName();
+
+                if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer) {
+                    parameters.add(new Parameter(method, args));
+                } else if (name.equals("clearParameters")) {
+                    parameters.clear();
+                } else if ((name.equals("executeQuery") || name.equals("executeUpdate")) && args == null && PLANS.get() != null) {
+                    PLANS.get().add(explain(connection, sql, parameters));
+                }
+
+                return invoke(statement, method, args);
+            });
+        }
+
+        private static String explain(Connection connection, String sql, List<Parameter> parameters) throws Exception {
+
+            try (PreparedStatement explain = connection.prepareStatement("EXPLAIN " + sql)) {
+
+                for (Parameter parameter : parameters) {
+                    parameter.setter().invoke(explain, parameter.args());
+                }
+
+                StringBuilder plan = new StringBuilder();
+
+                try (ResultSet rows = explain.executeQuery()) {
+                    while (rows.next()) {
+                        plan.append(rows.getString(1)).append('\n');
+                    }
+                }
+
+                return plan.toString();
+            }
+        }
+
+        @SuppressWarnings("unchecked")
+        private static <T> T proxy(Class<T> type, InvocationHandler handler) {
+
+            return (T) Proxy.newProxyInstance(Explainer.class.getClassLoader(), new Class<?>[]{type}, handler);
+        }
+
+        private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+
+            try {
+                return method.invoke(target, args);
+            } catch (InvocationTargetException e) {
+                throw e.getCause();
+            }
+        }
+    }
+}
@@ -0,0 +1,136 @@
+package com.yearis.blog_application.search;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+// what a search costs through LIKE '%word%' on title and content (what we'd need without PostSearchIndex)
+// against the same search answered by the index, on the same generated posts
+//
+// the posts sit in an embedded H2 database, so the LIKE side doesn't even pay a network round trip here,
+// against MySQL the gap is bigger
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PostSearchBenchmark {
+
+    // the words our posts are made of, the first ones much more often than the last ones
+    private static final int VOCABULARY = 5000;
+
+    @Param({"10000", "50000"})
+    private int posts;
+
+    // a word in most posts, and one in only a few of them
+    @Param({"common", "rare"})
+    private String word;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private PostSearchIndex index;
+
+    private String query;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:search-benchmark;MODE=MySQL;DATABASE_TO_LOWER=TRUE", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        jdbcTemplate.execute("CREATE TABLE posts (id BIGINT PRIMARY KEY, title VARCHAR(50) NOT NULL, content TEXT, created_date DATETIME(6))");
+
+        index = new PostSearchIndex(jdbcTemplate, 1000);
+
+        Random random = new Random(42);
+        List<Object[]> batch = new ArrayList<>();
+
+        for (long id = 1; id <= posts; id++) {
+
+            String title = words(random, 5);
+            String content = words(random, 80);
+
+            batch.add(new Object[]{id, title, content});
+            index.indexPost(id, title, content);
+
+            if (batch.size() == 1000) {
+                insert(batch);
+            }
+        }
+
+        insert(batch);
+
+        query = word.equals("common") ? "w1" : "w" + (VOCABULARY - 1);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public List<Long> like() {
+
+        String pattern = "%" + query + "%";
+
+        return jdbcTemplate.queryForList(
+                "SELECT id FROM posts WHERE title LIKE ? OR content LIKE ? ORDER BY created_date DESC, id DESC LIMIT 10",
+                Long.class, pattern, pattern);
+    }
+
+    @Benchmark
+    public List<Long> index() {
+
+        return index.search(query, 0, 10);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        new Runner(new OptionsBuilder().include(PostSearchBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /// --- Internals ---
+
+    private void insert(List<Object[]> batch) {
+
+        jdbcTemplate.batchUpdate("INSERT INTO posts (id, title, content, created_date) VALUES (?, ?, ?, NOW(6))", batch);
+        batch.clear();
+    }
+
+    // roughly Zipf: word i shows up about 1/i as often as the first one
+    private static String words(Random random, int count) {
+
+        StringBuilder text = new StringBuilder();
+
+        for (int i = 0; i < count; i++) {
+
+            int rank = (int) Math.min(VOCABULARY - 1, Math.floor(Math.exp(random.nextDouble() * Math.log(VOCABULARY))));
+
+            text.append(i == 0 ? "" : " ").append('w').append(rank);
+        }
+
+        return text.toString();
+    }
+}
@@ -0,0 +1,91 @@
+package com.yearis.blog_application.service;
+
+import com.yearis.blog_application.entity.User;
+import com.yearis.blog_application.payload.request.CommentRequest;
+import com.yearis.blog_application.payload.request.PostRequest;
+import com.yearis.blog_application.payload.response.CommentResponse;
+import com.yearis.blog_application.payload.response.PostResponse;
+import com.yearis.blog_application.repository.UserRepository;
+import com.yearis.blog_application.security.UserPrincipal;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.List;
+import java.util.function.Supplier;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// our ids come from the table generator, so the INSERT (and with it @CreationTimestamp) no longer happens on save()
+// what we answer a create with, and put in the feed cache and the ranking, still has to carry its createdDate
+@SpringBootTest
+@ActiveProfiles("test")
+class CreatedDateTest {
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Test
+    void createdPostsAndCommentsComeBackWithTheirCreatedDate() {
+
+        User user = userRepository.save(User.builder()
+                .username("timestamped")
+                .email("timestamped@example.com")
+                .password("$2a$10$notARealHashButLongEnough")
+                .build());
+
+        PostRequest postRequest = new PostRequest();
+        postRequest.setTitle("A post with a date");
+        postRequest.setContent("Content that is long enough for a post");
+
+        PostResponse post = as(user, () -> postService.createPost(postRequest));
+
+        assertThat(post.getCreatedDate()).as("createdDate of the new post").isNotNull();
+
+        CommentRequest commentRequest = new CommentRequest();
+        commentRequest.setBody("A comment with a date");
+
+        CommentResponse comment = as(user, () -> commentService.createComment(post.getId(), commentRequest));
+
+        assertThat(comment.getCreatedDate()).as("createdDate of the new comment").isNotNull();
+
+        // the first page of the feed comes from the feed cache, which got our response
+        assertThat(postService.findAllPosts(0, 10))
+                .filteredOn(feedPost -> feedPost.getId().equals(post.getId()))
+                .singleElement()
+                .satisfies(feedPost -> assertThat(feedPost.getCreatedDate()).isNotNull());
+    }
+
+    /// --- Internals ---
+
+    // runs like a request of this user would: CurrentUser is request scoped and reads the security context
+    private static <T> T as(User user, Supplier<T> action) {
+
+        ServletRequestAttributes request = new ServletRequestAttributes(new MockHttpServletRequest());
+        UserPrincipal principal = new UserPrincipal(user.getId(), user.getUsername(), user.getPassword(), user.getTokenVersion(), List.of());
+
+        RequestContextHolder.setRequestAttributes(request);
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities()));
+
+        try {
+            return action.get();
+        } finally {
+            request.requestCompleted();
+            RequestContextHolder.resetRequestAttributes();
+            SecurityContextHolder.clearContext();
+        }
+    }
+}
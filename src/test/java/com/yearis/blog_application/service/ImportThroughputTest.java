@@ -0,0 +1,120 @@
+package com.yearis.blog_application.service;
+
+import com.yearis.blog_application.entity.User;
+import com.yearis.blog_application.payload.request.ImportCommentRequest;
+import com.yearis.blog_application.payload.request.ImportPostRequest;
+import com.yearis.blog_application.payload.request.ImportRequest;
+import com.yearis.blog_application.payload.response.ImportResponse;
+import com.yearis.blog_application.repository.UserRepository;
+import jakarta.persistence.EntityManagerFactory;
+import org.hibernate.SessionFactory;
+import org.hibernate.stat.Statistics;
+import org.junit.jupiter.api.Nested;
+import org.junit.jupiter.api.Test;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.test.context.TestPropertySource;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// the rows per second of our admin import with JDBC batching (hibernate.jdbc.batch_size from application.properties)
+// and without it (Unbatched), both are logged so a run shows the before and after side by side
+//
+// on H2 a statement costs no network round trip, so the gap here is the smallest it gets. What we assert is
+// what batching is for: a few statements per batch instead of one per row
+@SpringBootTest(properties = "spring.jpa.properties.hibernate.generate_statistics = true")
+@ActiveProfiles("test")
+class ImportThroughputTest {
+
+    private static final Logger log = LoggerFactory.getLogger(ImportThroughputTest.class);
+
+    private static final int POSTS = 500;
+    private static final int COMMENTS_PER_POST = 4;
+    private static final int ROWS = POSTS * (1 + COMMENTS_PER_POST);
+
+    @Autowired
+    private ImportService importService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private EntityManagerFactory entityManagerFactory;
+
+    @Test
+    void batchedImportSendsAFewStatementsPerBatch() {
+
+        long statements = importAndCount("batched");
+
+        // every 50 rows a flush with one batch per statement (post INSERTs, comment INSERTs, path UPDATEs),
+        // plus a read and a write of id_generators per block of 50 ids, instead of an INSERT (and an UPDATE) per row
+        assertThat(statements).as("statements for %d rows", ROWS).isLessThan(ROWS / 5);
+    }
+
+    @Nested
+    @TestPropertySource(properties = "spring.jpa.properties.hibernate.jdbc.batch_size = 0")
+    class Unbatched {
+
+        @Test
+        void unbatchedImportSendsAStatementPerRow() {
+
+            long statements = importAndCount("unbatched");
+
+            assertThat(statements).as("statements for %d rows", ROWS).isGreaterThanOrEqualTo(ROWS);
+        }
+    }
+
+    /// --- Internals ---
+
+    private long importAndCount(String name) {
+
+        User author = userRepository.save(User.builder()
+                .username("importer-" + name)
+                .email("importer-" + name + "@example.com")
+                .password("$2a$10$notARealHashButLongEnough")
+                .build());
+
+        ImportRequest request = new ImportRequest();
+        request.setPosts(new ArrayList<>());
+
+        for (int i = 0; i < POSTS; i++) {
+
+            ImportPostRequest post = new ImportPostRequest();
+            post.setAuthorId(author.getId());
+            post.setTitle("Imported post number " + i);
+            post.setContent("The content of the imported post number " + i);
+
+            List<ImportCommentRequest> comments = new ArrayList<>();
+
+            for (int c = 0; c < COMMENTS_PER_POST; c++) {
+                ImportCommentRequest comment = new ImportCommentRequest();
+                comment.setAuthorId(author.getId());
+                comment.setBody("Imported comment " + c);
+                comments.add(comment);
+            }
+
+            post.setComments(comments);
+            request.getPosts().add(post);
+        }
+
+        Statistics statistics = entityManagerFactory.unwrap(SessionFactory.class).getStatistics();
+        statistics.clear();
+
+        ImportResponse response = importService.importPosts(request);
+
+        long statements = statistics.getPrepareStatementCount();
+
+        log.info("Import {}: {} rows in {} ms, {} rows/s, {} statements",
+                name, ROWS, response.getDurationMs(), response.getRowsPerSecond(), statements);
+
+        assertThat(response.getPostsImported() + response.getCommentsImported()).isEqualTo(ROWS);
+
+        return statements;
+    }
+}
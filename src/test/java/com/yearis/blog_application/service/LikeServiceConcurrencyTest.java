@@ -0,0 +1,168 @@
+package com.yearis.blog_application.service;
+
+import com.yearis.blog_application.entity.User;
+import com.yearis.blog_application.payload.request.CommentRequest;
+import com.yearis.blog_application.payload.request.PostRequest;
+import com.yearis.blog_application.repository.UserRepository;
+import com.yearis.blog_application.security.UserPrincipal;
+import org.junit.jupiter.api.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.boot.test.context.SpringBootTest;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.mock.web.MockHttpServletRequest;
+import org.springframework.security.authentication.UsernamePasswordAuthenticationToken;
+import org.springframework.security.core.context.SecurityContextHolder;
+import org.springframework.test.context.ActiveProfiles;
+import org.springframework.web.context.request.RequestContextHolder;
+import org.springframework.web.context.request.ServletRequestAttributes;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import static org.assertj.core.api.Assertions.assertThat;
+
+// many users toggling likes on the same few posts and comments at the same time, afterwards every
+// posts.likes / comments.likes must still be exactly the number of likes rows behind it
+//
+// the posts and comments are made through our services, so the author's own first like is in there too
+@SpringBootTest
+@ActiveProfiles("test")
+class LikeServiceConcurrencyTest {
+
+    private static final int USERS = 20;
+    private static final int THREADS = 8;
+    private static final int TOGGLES = 2000;
+
+    @Autowired
+    private LikeService likeService;
+
+    @Autowired
+    private PostService postService;
+
+    @Autowired
+    private CommentService commentService;
+
+    @Autowired
+    private UserRepository userRepository;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Test
+    void countersMatchTheLikesAfterConcurrentToggles() throws Exception {
+
+        List<User> users = new ArrayList<>();
+
+        for (int i = 0; i < USERS; i++) {
+            users.add(userRepository.save(User.builder()
+                    .username("toggler" + i)
+                    .email("toggler" + i + "@example.com")
+                    .password("$2a$10$notARealHashButLongEnough")
+                    .build()));
+        }
+
+        List<Long> postIds = new ArrayList<>();
+        List<Long[]> comments = new ArrayList<>();
+
+        for (int i = 0; i < 3; i++) {
+
+            PostRequest postRequest = new PostRequest();
+            postRequest.setTitle("A post everyone likes " + i);
+            postRequest.setContent("Content that is long enough for post number " + i);
+
+            Long postId = as(users.get(i), () -> postService.createPost(postRequest)).getId();
+            postIds.add(postId);
+
+            CommentRequest commentRequest = new CommentRequest();
+            commentRequest.setBody("A comment everyone likes " + i);
+
+            Long commentId = as(users.get(i + 1), () -> commentService.createComment(postId, commentRequest)).getId();
+            comments.add(new Long[]{postId, commentId});
+        }
+
+        Queue<Throwable> failures = new ConcurrentLinkedQueue<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(THREADS);
+
+        for (int thread = 0; thread < THREADS; thread++) {
+
+            Random random = new Random(thread);
+
+            executor.submit(() -> {
+
+                start.await();
+
+                for (int i = 0; i < TOGGLES / THREADS; i++) {
+
+                    User user = users.get(random.nextInt(USERS));
+
+                    try {
+                        if (random.nextBoolean()) {
+                            Long postId = postIds.get(random.nextInt(postIds.size()));
+                            as(user, () -> { likeService.toggleLikePost(postId); return null; });
+                        } else {
+                            Long[] comment = comments.get(random.nextInt(comments.size()));
+                            as(user, () -> { likeService.toggleLikeComment(comment[0], comment[1]); return null; });
+                        }
+                    } catch (Throwable e) {
+                        failures.add(e);
+                    }
+                }
+
+                return null;
+            });
+        }
+
+        start.countDown();
+        executor.shutdown();
+
+        assertThat(executor.awaitTermination(2, TimeUnit.MINUTES)).as("toggles finished").isTrue();
+        assertThat(failures).as("failed toggles").isEmpty();
+
+        for (Long postId : postIds) {
+            assertThat(jdbcTemplate.queryForObject("SELECT likes FROM posts WHERE id = ?", Long.class, postId))
+                    .as("likes of post %d", postId)
+                    .isEqualTo(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes WHERE post_id = ?", Long.class, postId));
+        }
+
+        for (Long[] comment : comments) {
+            assertThat(jdbcTemplate.queryForObject("SELECT likes FROM comments WHERE id = ?", Long.class, comment[1]))
+                    .as("likes of comment %d", comment[1])
+                    .isEqualTo(jdbcTemplate.queryForObject("SELECT COUNT(*) FROM likes WHERE comment_id = ?", Long.class, comment[1]));
+        }
+    }
+
+    /// --- Internals ---
+
+    // runs like a request of this user would: CurrentUser is request scoped and reads the security context
+    private static <T> T as(User user, Action<T> action) throws Exception {
+
+        ServletRequestAttributes request = new ServletRequestAttributes(new MockHttpServletRequest());
+        UserPrincipal principal = new UserPrincipal(user.getId(), user.getUsername(), user.getPassword(), user.getTokenVersion(), List.of());
+
+        RequestContextHolder.setRequestAttributes(request);
+        SecurityContextHolder.getContext().setAuthentication(
+                UsernamePasswordAuthenticationToken.authenticated(principal, null, principal.getAuthorities()));
+
+        try {
+            return action.run();
+        } finally {
+            request.requestCompleted();
+            RequestContextHolder.resetRequestAttributes();
+            SecurityContextHolder.clearContext();
+        }
+    }
+
+    @FunctionalInterface
+    private interface Action<T> {
+
+        T run() throws Exception;
+    }
+}
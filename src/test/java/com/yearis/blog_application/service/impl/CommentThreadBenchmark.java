@@ -0,0 +1,169 @@
+package com.yearis.blog_application.service.impl;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+// a post's comment thread through CommentThreadQuery (one query, limited per level in SQL) against what a client had to do before
+// GET /comments/tree: the root page, then for every comment it expands a lookup of the comment and a page of its replies
+//
+// the comments sit in an embedded H2 database, so every query of the per-level path saves the network round trip
+// it pays against MySQL, the real gap is bigger than what this shows
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CommentThreadBenchmark {
+
+    private static final long POST_ID = 1;
+
+    // spring.comments.tree.max-rows
+    private static final int MAX_ROWS = 2000;
+
+    private static final String ROOTS_SQL =
+            "SELECT c.id, c.body, c.created_date, c.likes, u.username FROM comments c LEFT JOIN users u ON u.id = c.user_id " +
+                    "WHERE c.post_id = ? AND c.parent_id IS NULL ORDER BY c.likes DESC LIMIT ?";
+
+    private static final String EXISTS_SQL = "SELECT COUNT(*) FROM comments WHERE id = ? AND post_id = ?";
+
+    private static final String REPLIES_SQL =
+            "SELECT c.id, c.body, c.created_date, c.likes, u.username FROM comments c LEFT JOIN users u ON u.id = c.user_id " +
+                    "WHERE c.parent_id = ? ORDER BY c.created_date, c.id LIMIT ?";
+
+    @Param({"2", "3", "4"})
+    private int depth;
+
+    // the root comments and the replies of every comment
+    @Param({"10"})
+    private int limitPerLevel;
+
+    private SingleConnectionDataSource dataSource;
+    private JdbcTemplate jdbcTemplate;
+    private CommentThreadQuery threadQuery;
+
+    @Setup(Level.Trial)
+    public void setUp() {
+
+        dataSource = new SingleConnectionDataSource("jdbc:h2:mem:thread-benchmark;MODE=MySQL;DATABASE_TO_LOWER=TRUE", "sa", "", true);
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        jdbcTemplate.execute("CREATE TABLE users (id BIGINT PRIMARY KEY, username VARCHAR(20))");
+        jdbcTemplate.execute("CREATE TABLE comments (id BIGINT PRIMARY KEY, body VARCHAR(1000), created_date DATETIME(6), " +
+                "edited BOOLEAN NOT NULL DEFAULT FALSE, likes INT NOT NULL DEFAULT 1, post_id BIGINT, user_id BIGINT, " +
+                "parent_id BIGINT, reply_count INT NOT NULL DEFAULT 0)");
+        jdbcTemplate.execute("CREATE INDEX idx_comments_post_id_parent_id_likes ON comments (post_id, parent_id, likes)");
+        jdbcTemplate.execute("CREATE INDEX idx_comments_parent_id ON comments (parent_id)");
+
+        jdbcTemplate.update("INSERT INTO users (id, username) VALUES (1, 'reader')");
+
+        // a few more root comments than a page, and limitPerLevel replies under every comment down to the 4th level
+        List<Object[]> rows = new ArrayList<>();
+        List<Long> level = new ArrayList<>();
+        long[] nextId = {1};
+
+        for (int i = 0; i < limitPerLevel + 5; i++) {
+            level.add(comment(rows, nextId, null, i, limitPerLevel));
+        }
+
+        for (int d = 1; d < 4; d++) {
+
+            List<Long> next = new ArrayList<>();
+            int replyCount = d < 3 ? limitPerLevel : 0;
+
+            for (Long parentId : level) {
+                for (int i = 0; i < limitPerLevel; i++) {
+                    next.add(comment(rows, nextId, parentId, i, replyCount));
+                }
+            }
+
+            level = next;
+        }
+
+        jdbcTemplate.batchUpdate("INSERT INTO comments (id, body, created_date, likes, post_id, user_id, parent_id, reply_count) " +
+                "VALUES (?, ?, DATEADD('SECOND', ?, TIMESTAMP '2026-01-01 00:00:00'), ?, ?, 1, ?, ?)", rows);
+
+        threadQuery = new CommentThreadQuery(jdbcTemplate);
+    }
+
+    @TearDown(Level.Trial)
+    public void tearDown() {
+
+        dataSource.destroy();
+    }
+
+    @Benchmark
+    public List<CommentThreadQuery.ThreadRow> threadQuery() {
+
+        return threadQuery.load(POST_ID, depth, limitPerLevel, MAX_ROWS);
+    }
+
+    @Benchmark
+    public int perLevel() {
+
+        List<Map<String, Object>> roots = jdbcTemplate.queryForList(ROOTS_SQL, POST_ID, limitPerLevel);
+
+        return roots.size() + replies(roots, 1);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+
+        new Runner(new OptionsBuilder().include(CommentThreadBenchmark.class.getSimpleName()).build()).run();
+    }
+
+    /// --- Internals ---
+
+    // what the client does for every comment it expands: GET the comment, then GET the first page of its replies
+    private int replies(List<Map<String, Object>> parents, int level) {
+
+        if (level >= depth) {
+            return 0;
+        }
+
+        int loaded = 0;
+
+        for (Map<String, Object> parent : parents) {
+
+            Long parentId = ((Number) parent.get("id")).longValue();
+
+            jdbcTemplate.queryForObject(EXISTS_SQL, Long.class, parentId, POST_ID);
+
+            List<Map<String, Object>> replies = jdbcTemplate.queryForList(REPLIES_SQL, parentId, limitPerLevel);
+
+            loaded += replies.size() + replies(replies, level + 1);
+        }
+
+        return loaded;
+    }
+
+    // root comments get different likes so their order means something, replies keep the first like
+    private static long comment(List<Object[]> rows, long[] nextId, Long parentId, int position, int replyCount) {
+
+        long id = nextId[0]++;
+
+        rows.add(new Object[]{id, "Comment number " + id, (int) id, parentId == null ? position + 1 : 1, POST_ID, parentId, replyCount});
+
+        return id;
+    }
+}